@@ -0,0 +1,59 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.benchmarks;
+
+import com.github.crashdemons.miningtrophies.SeededRollSource;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares rolling N blocks of one type individually against sampling the successes with RollSource.nextBinomial (ops are whole batches).
+ * @author crash
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchRollBenchmark {
+    @Param({"8", "64", "512"})
+    public int blocks;
+
+    @Param({"0.0001", "0.03"})
+    public double droprate;
+
+    private SeededRollSource source;
+
+    @Setup
+    public void setup(){
+        source = new SeededRollSource(0);
+    }
+
+    @Benchmark
+    public int individualRolls(){
+        int successes = 0;
+        for(int i=0;i<blocks;i++){
+            if(source.nextRoll() < droprate) successes++;
+        }
+        return successes;
+    }
+
+    @Benchmark
+    public int binomial(){
+        return source.nextBinomial(blocks, droprate);
+    }
+}
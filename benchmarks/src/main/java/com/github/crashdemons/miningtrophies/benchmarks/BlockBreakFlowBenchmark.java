@@ -0,0 +1,104 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.benchmarks;
+
+import com.github.crashdemons.miningtrophies.MiningTrophies;
+import com.github.crashdemons.miningtrophies.SeededRollSource;
+import com.github.crashdemons.miningtrophies.TrophyDropListener;
+import com.github.crashdemons.miningtrophies.TrophyType;
+import com.github.crashdemons.miningtrophies.events.TrophyRollEvent;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.RegisteredListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a block break handled by the real TrophyDropListener.onBlockBreakEvent of a MiningTrophies plugin enabled on the stub server:
+ * type lookup, the placed-block, tool and permission checks, the roll and TrophyRollEvent, the protection-check events,
+ * trophy creation, BlockDropTrophyEvent and the listener metrics. The stub world ignores the dropped item.
+ * The server is advanced by a tick every {@value #BREAKS_PER_TICK} breaks, so the deferred statistics and leaderboard updates are included.
+ * @author crash
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BlockBreakFlowBenchmark {
+    static final int BREAKS_PER_TICK = 1024;
+
+    @Param({"STONE", "DIAMOND_ORE", "DEEPSLATE_IRON_ORE"})
+    public String blockType;
+
+    @Param({"0.0001", "1.0"})
+    public double droprate;
+
+    @Param({"false", "true"})
+    public boolean rollListener;
+
+    @Param({"full", "breakonly", "cached"})
+    public String protectionCheck;
+
+    private MiningTrophies plugin;
+    private TrophyDropListener listener;
+    private Block block;
+    private Player player;
+    private int breaks = 0;
+    private RegisteredListener registration;
+
+    @Setup
+    public void setup(){
+        StubServer.install();
+        YamlConfiguration config = StubServer.loadDefaultConfig();
+        for(TrophyType type : TrophyType.values()){
+            config.set(type.getDropConfigName(), droprate);
+        }
+        config.set("protectioncheck", protectionCheck);
+        config.set("broadcast", false);//the stub server has no players to announce trophies to
+        plugin = StubServer.enablePlugin(config);
+        plugin.setRollSource(new SeededRollSource(0));
+        listener = new TrophyDropListener(plugin);
+        block = StubServer.newBlock(Material.valueOf(blockType));
+        player = StubServer.newPlayer(new ItemStack(Material.DIAMOND_PICKAXE, 1));
+        if(rollListener){
+            registration = StubServer.registerNoOpListener(TrophyRollEvent.getHandlerList());
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        if(registration!=null){
+            TrophyRollEvent.getHandlerList().unregister(registration);
+            registration = null;
+        }
+        StubServer.disablePlugin(plugin);
+    }
+
+    @Benchmark
+    public BlockBreakEvent blockBreak(){
+        BlockBreakEvent event = new BlockBreakEvent(block, player);
+        listener.onBlockBreakEvent(event);
+        if(++breaks % BREAKS_PER_TICK == 0) StubServer.tick();
+        return event;
+    }
+}
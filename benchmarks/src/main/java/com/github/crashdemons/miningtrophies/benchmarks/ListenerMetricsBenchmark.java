@@ -0,0 +1,63 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.benchmarks;
+
+import com.github.crashdemons.miningtrophies.metrics.ExitReason;
+import com.github.crashdemons.miningtrophies.metrics.PluginMetrics;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead that listener metrics add to each event (ops are individual recordings), with and without timing.
+ * @author crash
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListenerMetricsBenchmark {
+    @Param({"false", "true"})
+    public boolean timing;
+
+    private PluginMetrics metrics;
+
+    @Setup
+    public void setup(){
+        metrics = new PluginMetrics();
+        metrics.setTimingEnabled(timing);
+    }
+
+    @Benchmark
+    public void record(){
+        long start = metrics.start();
+        metrics.getBlockBreak().record(ExitReason.NOT_TROPHY_BLOCK, start);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended(){
+        long start = metrics.start();
+        metrics.getBlockBreak().record(ExitReason.NOT_TROPHY_BLOCK, start);
+    }
+
+    @Benchmark
+    public String toPrometheus(){
+        return metrics.toPrometheus();
+    }
+}
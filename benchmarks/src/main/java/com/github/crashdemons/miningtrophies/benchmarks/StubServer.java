@@ -0,0 +1,378 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.benchmarks;
+
+import com.github.crashdemons.miningtrophies.MiningTrophies;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Registry;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.inventory.EntityEquipment;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.mockito.Mockito;
+
+/**
+ * A minimal in-memory Bukkit server for benchmarks.
+ *
+ * Everything is implemented with dynamic proxies that only understand the handful of methods used by the trophy hot paths
+ * (registries, item meta, persistent data, and simple players/blocks). Any other method returns a default value.
+ * Scheduled tasks run immediately, and repeating tasks run when the benchmark advances the server with {@link #tick()}.
+ * @author crash
+ */
+public final class StubServer {
+    private static boolean installed = false;
+    private static Server server = null;
+    private static final Map<NamespacedKey,Enchantment> enchantments = new ConcurrentHashMap<>();
+    private static final List<Timer> timers = new CopyOnWriteArrayList<>();
+    private static long currentTick = 0;
+
+    private StubServer(){}
+
+    /**
+     * Installs the stub server as the Bukkit singleton, if it was not already installed.
+     */
+    public static synchronized void install(){
+        if(installed) return;
+        Map<Class<?>,Object> registries = new ConcurrentHashMap<>();
+        ItemFactory itemFactory = proxy(ItemFactory.class, (self, method, args) -> {
+            switch(method.getName()){
+                case "getItemMeta": return newItemMeta();
+                case "isApplicable": return true;
+                case "asMetaFor": return args[0];
+                case "updateMaterial": return args[1];
+                case "equals":
+                    if(args.length==1) return self==args[0];
+                    return Objects.equals(args[0], args[1]);
+                default: return defaultValue(method);
+            }
+        });
+        Logger logger = Logger.getLogger("StubServer");
+        PluginManager pluginManager = proxy(PluginManager.class, (self, method, args) -> {
+            if("callEvent".equals(method.getName())){
+                callEvent((Event) args[0]);
+                return null;
+            }
+            return defaultValue(method);
+        });
+        BukkitScheduler scheduler = proxy(BukkitScheduler.class, (self, method, args) -> {
+            switch(method.getName()){
+                case "runTask": case "runTaskAsynchronously": case "runTaskLater":
+                    ((Runnable) args[1]).run();
+                    return newTask(null);
+                case "runTaskTimer": case "runTaskTimerAsynchronously":
+                    return newTask(new Timer((Runnable) args[1], (Long) args[2], (Long) args[3]));
+                default: return defaultValue(method);
+            }
+        });
+        server = proxy(Server.class, (self, method, args) -> {
+            switch(method.getName()){
+                case "getLogger": return logger;
+                case "getName": return "StubServer";
+                case "getVersion": case "getBukkitVersion": return "stub";
+                case "getItemFactory": return itemFactory;
+                case "getPluginManager": return pluginManager;
+                case "getScheduler": return scheduler;
+                case "getWorlds": case "getOnlinePlayers": return Collections.emptyList();
+                case "getRegistry": return registries.computeIfAbsent((Class<?>) args[0], StubServer::newRegistry);
+                case "isPrimaryThread": return true;
+                default: return defaultValue(method);
+            }
+        });
+        Bukkit.setServer(server);
+        installed = true;
+    }
+
+    /**
+     * Loads the default plugin configuration bundled with MiningTrophies.
+     * @return the default configuration
+     */
+    public static YamlConfiguration loadDefaultConfig(){
+        try(Reader reader = new InputStreamReader(StubServer.class.getClassLoader().getResourceAsStream("config.yml"), StandardCharsets.UTF_8)){
+            return YamlConfiguration.loadConfiguration(reader);
+        }catch(Exception e){
+            throw new IllegalStateException("could not load the default MiningTrophies config", e);
+        }
+    }
+
+    /**
+     * Enables a real MiningTrophies plugin on the stub server, in a temporary data folder.
+     * @param config the configuration to enable the plugin with
+     * @return the enabled plugin
+     */
+    @SuppressWarnings("deprecation")
+    public static MiningTrophies enablePlugin(YamlConfiguration config){
+        install();
+        try{
+            File dataFolder = Files.createTempDirectory("MiningTrophies-benchmark").toFile();
+            config.save(new File(dataFolder, "config.yml"));
+            PluginDescriptionFile description = new PluginDescriptionFile("MiningTrophies", "benchmark", MiningTrophies.class.getName());
+            MiningTrophies plugin = new MiningTrophies(new JavaPluginLoader(server), description, dataFolder, new File(dataFolder, "MiningTrophies.jar")){};
+            plugin.onEnable();
+            return plugin;
+        }catch(IOException e){
+            throw new IllegalStateException("could not create the MiningTrophies data folder", e);
+        }
+    }
+
+    /**
+     * Disables a plugin enabled by {@link #enablePlugin(YamlConfiguration)} and deletes its data folder.
+     * @param plugin the plugin
+     */
+    public static void disablePlugin(MiningTrophies plugin){
+        plugin.onDisable();
+        timers.clear();
+        try(Stream<Path> files = Files.walk(plugin.getDataFolder().toPath())){
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }catch(IOException e){
+            throw new IllegalStateException("could not delete the MiningTrophies data folder", e);
+        }
+    }
+
+    /**
+     * Advances the server by one tick, running the repeating tasks that are due.
+     */
+    public static synchronized void tick(){
+        currentTick++;
+        for(Timer timer : timers){
+            if(currentTick < timer.next) continue;
+            timer.next = currentTick + timer.period;
+            timer.task.run();
+        }
+    }
+
+    private static final class Timer {
+        final Runnable task;
+        final long period;
+        long next;
+
+        Timer(Runnable task, long delay, long period){
+            this.task = task;
+            this.period = Math.max(1, period);
+            this.next = currentTick + Math.max(1, delay);
+        }
+    }
+
+    private static BukkitTask newTask(Timer timer){
+        if(timer!=null) timers.add(timer);
+        return proxy(BukkitTask.class, (self, method, args) -> {
+            switch(method.getName()){
+                case "cancel": timers.remove(timer); return null;
+                case "isCancelled": return !timers.contains(timer);
+                default: return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * Creates a block of the given type
+     * @param type the block material
+     * @return the block
+     */
+    public static Block newBlock(Material type){
+        World world = proxy(World.class, (self, method, args) -> "getName".equals(method.getName()) ? "world" : defaultValue(method));
+        Location location = new Location(world, 0, 12, 0);
+        return proxy(Block.class, (self, method, args) -> {
+            switch(method.getName()){
+                case "getType": return type;
+                case "getLocation": return location.clone();
+                case "getWorld": return world;
+                case "getY": return 12;
+                default: return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * Creates a survival-mode player holding the given tool
+     * @param tool the item in the player's main hand
+     * @return the player
+     */
+    public static Player newPlayer(ItemStack tool){
+        UUID uuid = UUID.randomUUID();
+        EntityEquipment equipment = proxy(EntityEquipment.class, (self, method, args) -> "getItemInMainHand".equals(method.getName()) ? tool : defaultValue(method));
+        return proxy(Player.class, (self, method, args) -> {
+            switch(method.getName()){
+                case "getUniqueId": return uuid;
+                case "getName": case "getDisplayName": return "BenchmarkPlayer";
+                case "getGameMode": return GameMode.SURVIVAL;
+                case "getEquipment": return equipment;
+                case "hasPermission": return "miningtrophies.canberewarded".equals(args[0]);
+                default: return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * Creates a plugin whose server is the stub server, for classes that fire events through their plugin.
+     * @return the plugin
+     */
+    public static Plugin newPlugin(){
+        return proxy(Plugin.class, (self, method, args) -> {
+            switch(method.getName()){
+                case "getName": return "Benchmark";
+                case "getServer": return server;
+                case "getLogger": return Logger.getLogger("Benchmark");
+                default: return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * Registers a listener that does nothing with the given handler list, so that benchmarks can measure paths that only run when an event has listeners.
+     * @param handlers the handler list of the event
+     * @return the registration, to be passed to {@link HandlerList#unregister(RegisteredListener)}
+     */
+    public static RegisteredListener registerNoOpListener(HandlerList handlers){
+        Plugin plugin = proxy(Plugin.class, (self, method, args) -> "getName".equals(method.getName()) ? "Benchmark" : defaultValue(method));
+        RegisteredListener registration = new RegisteredListener(new Listener(){}, (listener, event) -> {}, EventPriority.NORMAL, plugin, false);
+        handlers.register(registration);
+        return registration;
+    }
+
+    /**
+     * Calls the registered listeners of an event, as the plugin manager would.
+     * @param event the event to call
+     */
+    public static void callEvent(Event event){
+        for(RegisteredListener listener : event.getHandlers().getRegisteredListeners()){
+            try{
+                listener.callEvent(event);
+            }catch(EventException e){
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static Object newRegistry(Class<?> type){
+        return proxy(Registry.class, (self, method, args) -> {
+            if("get".equals(method.getName()) && args!=null && args.length==1 && type==Enchantment.class){
+                return enchantments.computeIfAbsent((NamespacedKey) args[0], key -> Mockito.mock(Enchantment.class));
+            }
+            return defaultValue(method);
+        });
+    }
+
+    private static ItemMeta newItemMeta(){
+        return newItemMeta(new MetaState());
+    }
+
+    private static final class MetaState {
+        String displayName = null;
+        List<String> lore = null;
+        final LinkedHashMap<Enchantment,Integer> enchants = new LinkedHashMap<>();
+        final HashMap<NamespacedKey,Object> data = new HashMap<>();
+
+        MetaState copy(){
+            MetaState copy = new MetaState();
+            copy.displayName = displayName;
+            copy.lore = lore==null ? null : new ArrayList<>(lore);
+            copy.enchants.putAll(enchants);
+            copy.data.putAll(data);
+            return copy;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ItemMeta newItemMeta(MetaState state){
+        PersistentDataContainer container = proxy(PersistentDataContainer.class, (self, method, args) -> {
+            switch(method.getName()){
+                case "set": state.data.put((NamespacedKey) args[0], args[2]); return null;
+                case "get": return state.data.get((NamespacedKey) args[0]);
+                case "getOrDefault": return state.data.getOrDefault((NamespacedKey) args[0], args[2]);
+                case "has": return state.data.containsKey((NamespacedKey) args[0]);
+                case "remove": state.data.remove((NamespacedKey) args[0]); return null;
+                case "getKeys": return state.data.keySet();
+                case "isEmpty": return state.data.isEmpty();
+                default: return defaultValue(method);
+            }
+        });
+        return proxy(ItemMeta.class, (self, method, args) -> {
+            switch(method.getName()){
+                case "hasDisplayName": return state.displayName!=null;
+                case "getDisplayName": return state.displayName;
+                case "setDisplayName": state.displayName = (String) args[0]; return null;
+                case "hasLore": return state.lore!=null && !state.lore.isEmpty();
+                case "getLore": return state.lore==null ? null : new ArrayList<>(state.lore);
+                case "setLore": state.lore = args[0]==null ? null : new ArrayList<>((List<String>) args[0]); return null;
+                case "addEnchant": state.enchants.put((Enchantment) args[0], (Integer) args[1]); return true;
+                case "hasEnchants": return !state.enchants.isEmpty();
+                case "hasEnchant": return state.enchants.containsKey((Enchantment) args[0]);
+                case "getEnchantLevel": return state.enchants.getOrDefault((Enchantment) args[0], 0);
+                case "getEnchants": return new LinkedHashMap<>(state.enchants);
+                case "getPersistentDataContainer": return container;
+                case "clone": return newItemMeta(state.copy());
+                case "equals": return self==args[0];
+                case "hashCode": return System.identityHashCode(self);
+                case "toString": return "StubItemMeta";
+                default: return defaultValue(method);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler){
+        return (T) Proxy.newProxyInstance(StubServer.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(Method method){
+        Class<?> type = method.getReturnType();
+        if(!type.isPrimitive() || type==void.class) return null;
+        if(type==boolean.class) return false;
+        if(type==char.class) return '\0';
+        if(type==byte.class) return (byte) 0;
+        if(type==short.class) return (short) 0;
+        if(type==int.class) return 0;
+        if(type==long.class) return 0L;
+        if(type==float.class) return 0f;
+        return 0d;
+    }
+}
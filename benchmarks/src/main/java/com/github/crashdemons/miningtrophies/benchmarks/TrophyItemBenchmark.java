@@ -0,0 +1,95 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.benchmarks;
+
+import com.github.crashdemons.miningtrophies.TrophyItemCache;
+import com.github.crashdemons.miningtrophies.TrophyType;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures trophy item creation and identification.
+ * @author crash
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrophyItemBenchmark {
+    private TrophyItemCache cache;
+    private ItemStack trophy;
+    private ItemStack legacyTrophy;
+    private ItemStack plainItem;
+    private ItemStack namedItem;
+
+    @Setup
+    public void setup(){
+        StubServer.install();
+        cache = new TrophyItemCache();
+        trophy = TrophyType.DIAMOND_ORE.createDrop();
+
+        legacyTrophy = new ItemStack(Material.DIAMOND, 1);
+        ItemMeta legacyMeta = legacyTrophy.getItemMeta();
+        legacyMeta.setLore(TrophyType.DIAMOND_ORE.getLore());
+        legacyTrophy.setItemMeta(legacyMeta);
+
+        plainItem = new ItemStack(Material.COBBLESTONE, 64);
+
+        namedItem = new ItemStack(Material.DIAMOND, 1);
+        ItemMeta namedMeta = namedItem.getItemMeta();
+        namedMeta.setDisplayName("Not a trophy");
+        namedItem.setItemMeta(namedMeta);
+    }
+
+    @Benchmark
+    public ItemStack createDrop(){
+        return TrophyType.DIAMOND_ORE.createDrop(true, true, true);
+    }
+
+    @Benchmark
+    public ItemStack createDropCached(){
+        return cache.createDrop(TrophyType.DIAMOND_ORE, true, true, true);
+    }
+
+    @Benchmark
+    public TrophyType identifyTrophy(){
+        return TrophyType.identifyTrophyItem(trophy);
+    }
+
+    @Benchmark
+    public TrophyType identifyLegacyTrophy(){
+        return TrophyType.identifyTrophyItem(legacyTrophy);
+    }
+
+    @Benchmark
+    public TrophyType identifyPlainItem(){
+        return TrophyType.identifyTrophyItem(plainItem);
+    }
+
+    @Benchmark
+    public TrophyType identifyNamedItem(){
+        return TrophyType.identifyTrophyItem(namedItem);
+    }
+
+    @Benchmark
+    public boolean prefilterPlainItem(){
+        return TrophyType.isTrophyDropMaterial(plainItem.getType());
+    }
+}
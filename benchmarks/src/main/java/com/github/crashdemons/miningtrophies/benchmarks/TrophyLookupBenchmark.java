@@ -0,0 +1,76 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.benchmarks;
+
+import com.github.crashdemons.miningtrophies.TrophyDefinition;
+import com.github.crashdemons.miningtrophies.TrophyRegistry;
+import com.github.crashdemons.miningtrophies.TrophyType;
+import org.bukkit.configuration.file.YamlConfiguration;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures TrophyRegistry.get and the TrophyType.get compatibility view across the full Material set (ops are individual lookups),
+ * and building a registry from the default configuration.
+ * @author crash
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrophyLookupBenchmark {
+    private Material[] materials;
+    private YamlConfiguration config;
+    private TrophyRegistry registry;
+    private int index = 0;
+
+    @Setup
+    public void setup(){
+        StubServer.install();
+        materials = Material.values();
+        config = StubServer.loadDefaultConfig();
+        registry = TrophyRegistry.fromConfig(config);
+    }
+
+    @Benchmark
+    public TrophyDefinition lookup(){
+        Material mat = materials[index];
+        index = (index + 1) % materials.length;
+        return registry.get(mat);
+    }
+
+    @Benchmark
+    public TrophyType lookupType(){
+        Material mat = materials[index];
+        index = (index + 1) % materials.length;
+        return TrophyType.get(mat);
+    }
+
+    @Benchmark
+    public void lookupAllMaterials(Blackhole blackhole){
+        for(Material mat : materials){
+            blackhole.consume(TrophyType.get(mat));
+        }
+    }
+
+    @Benchmark
+    public TrophyRegistry buildRegistry(){
+        return TrophyRegistry.fromConfig(config);
+    }
+}
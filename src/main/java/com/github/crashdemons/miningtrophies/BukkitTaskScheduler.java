@@ -0,0 +1,55 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Schedules tasks with the Bukkit scheduler, where the whole world is owned by the main thread.
+ * @author crash
+ */
+final class BukkitTaskScheduler implements TaskScheduler {
+    private final Plugin plugin;
+
+    BukkitTaskScheduler(Plugin plugin){
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean isRegionThreaded(){
+        return false;
+    }
+
+    @Override
+    public Task runTimer(Runnable task, long delayTicks, long periodTicks){
+        BukkitTask scheduled = plugin.getServer().getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks);
+        return scheduled::cancel;
+    }
+
+    @Override
+    public Task runAsyncTimer(Runnable task, long delayTicks, long periodTicks){
+        BukkitTask scheduled = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, task, delayTicks, periodTicks);
+        return scheduled::cancel;
+    }
+
+    @Override
+    public void runAt(Location location, Runnable task){
+        runOnMainThread(task);
+    }
+
+    @Override
+    public void runFor(Entity entity, Runnable task){
+        runOnMainThread(task);
+    }
+
+    private void runOnMainThread(Runnable task){
+        if(plugin.getServer().isPrimaryThread()) task.run();
+        else plugin.getServer().getScheduler().runTask(plugin, task);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import com.github.crashdemons.miningtrophies.metrics.ExitReason;
+import com.github.crashdemons.miningtrophies.metrics.ListenerMetrics;
+import com.github.crashdemons.miningtrophies.metrics.PluginMetrics;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.entity.Item;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.ItemSpawnEvent;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Replaces dropped trophy items with freshly created trophies, so that trophies made by older versions are updated.
+ * Only registered while the fixdroppedtrophies setting is enabled.
+ * @author crash
+ */
+public final class DroppedTrophyListener implements Listener {
+    private final MiningTrophies plugin;
+    private final LongAdder spawnsSeen = new LongAdder();
+    private final LongAdder spawnsPrefiltered = new LongAdder();
+    private final LongAdder spawnsRepaired = new LongAdder();
+
+    /**
+     * Constructs the listener
+     * @param plugin the plugin used to create replacement trophies
+     */
+    public DroppedTrophyListener(MiningTrophies plugin){
+        this.plugin = plugin;
+    }
+
+    /**
+     * Gets the number of item spawns checked.
+     * @return the number of item spawns seen
+     */
+    public long getSpawnsSeen(){ return spawnsSeen.sum(); }
+
+    /**
+     * Gets the number of item spawns rejected by material alone, without inspecting the item meta.
+     * @return the number of item spawns prefiltered
+     */
+    public long getSpawnsPrefiltered(){ return spawnsPrefiltered.sum(); }
+
+    /**
+     * Gets the number of dropped trophies that were replaced with a freshly created trophy item.
+     * @return the number of item spawns repaired
+     */
+    public long getSpawnsRepaired(){ return spawnsRepaired.sum(); }
+
+    @EventHandler(ignoreCancelled=true,priority=EventPriority.LOWEST)
+    public void onItemSpawn(ItemSpawnEvent event){
+        PluginMetrics metrics = plugin.getMetrics();
+        ListenerMetrics listenerMetrics = metrics.getItemSpawn();
+        long start = metrics.start();
+        ExitReason reason = ExitReason.ERROR;
+        try{
+            reason = handleItemSpawn(event);
+        }finally{
+            listenerMetrics.record(reason, start);
+        }
+    }
+    
+    private ExitReason handleItemSpawn(ItemSpawnEvent event){
+        spawnsSeen.increment();
+        Item entity = event.getEntity();
+        ItemStack stack = entity.getItemStack();
+        TrophyRegistry registry = plugin.getSettings().getRegistry();
+        if(!registry.isTrophyDropMaterial(stack.getType())){
+            spawnsPrefiltered.increment();
+            return ExitReason.PREFILTERED;
+        }
+        TrophyDefinition trophy = registry.identifyTrophyItem(stack);
+        if(trophy==null) return ExitReason.NOT_TROPHY_ITEM;
+        
+        int oldAmount = stack.getAmount();
+        
+        ItemStack newStack = plugin.createTrophyDrop(trophy);
+        if(newStack==null){ plugin.getLogger().warning("replacement trophy item was null!"); return ExitReason.ERROR; }
+        if(newStack.getType().isAir()){plugin.getLogger().warning("replacement trophy item was air!"); return ExitReason.ERROR; }
+        
+        newStack.setAmount(oldAmount);
+        entity.setItemStack(newStack);
+        spawnsRepaired.increment();
+        return ExitReason.REPAIRED;
+    }
+}
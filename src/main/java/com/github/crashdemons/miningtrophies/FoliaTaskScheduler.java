@@ -0,0 +1,122 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Schedules tasks with the region, entity, global region and async schedulers of a Folia server.
+ *
+ * The plugin is built against the Bukkit API, which does not have these schedulers, so they are looked up by reflection once when the plugin is enabled.
+ * @author crash
+ */
+final class FoliaTaskScheduler implements TaskScheduler {
+    private static final String SCHEDULER_PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+    private static final long MILLIS_PER_TICK = 50;
+
+    private final Plugin plugin;
+    private final Object globalScheduler;
+    private final Object regionScheduler;
+    private final Object asyncScheduler;
+    private final Method globalRunAtFixedRate;
+    private final Method regionExecute;
+    private final Method asyncRunAtFixedRate;
+    private final Method entityGetScheduler;
+    private final Method entityExecute;
+    private final Method taskCancel;
+    private final Method isOwnedByCurrentRegionLocation;
+    private final Method isOwnedByCurrentRegionEntity;
+
+    /**
+     * Checks whether the server is a Folia server
+     * @return whether the region schedulers are available
+     */
+    static boolean isSupported(){
+        try{
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        }catch(ClassNotFoundException e){
+            return false;
+        }
+    }
+
+    FoliaTaskScheduler(Plugin plugin){
+        this.plugin = plugin;
+        try{
+            Class<?> globalClass = Class.forName(SCHEDULER_PACKAGE+"GlobalRegionScheduler");
+            Class<?> regionClass = Class.forName(SCHEDULER_PACKAGE+"RegionScheduler");
+            Class<?> asyncClass = Class.forName(SCHEDULER_PACKAGE+"AsyncScheduler");
+            Class<?> entityClass = Class.forName(SCHEDULER_PACKAGE+"EntityScheduler");
+            Class<?> taskClass = Class.forName(SCHEDULER_PACKAGE+"ScheduledTask");
+            Class<?> bukkitServer = Class.forName("org.bukkit.Server");
+            globalScheduler = bukkitServer.getMethod("getGlobalRegionScheduler").invoke(plugin.getServer());
+            regionScheduler = bukkitServer.getMethod("getRegionScheduler").invoke(plugin.getServer());
+            asyncScheduler = bukkitServer.getMethod("getAsyncScheduler").invoke(plugin.getServer());
+            globalRunAtFixedRate = globalClass.getMethod("runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class);
+            regionExecute = regionClass.getMethod("execute", Plugin.class, Location.class, Runnable.class);
+            asyncRunAtFixedRate = asyncClass.getMethod("runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class, TimeUnit.class);
+            entityGetScheduler = Entity.class.getMethod("getScheduler");
+            entityExecute = entityClass.getMethod("execute", Plugin.class, Runnable.class, Runnable.class, long.class);
+            taskCancel = taskClass.getMethod("cancel");
+            isOwnedByCurrentRegionLocation = bukkitServer.getMethod("isOwnedByCurrentRegion", Location.class);
+            isOwnedByCurrentRegionEntity = bukkitServer.getMethod("isOwnedByCurrentRegion", Entity.class);
+        }catch(ReflectiveOperationException e){
+            throw new IllegalStateException("Folia was detected but its schedulers could not be found", e);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args){
+        try{
+            return method.invoke(target, args);
+        }catch(InvocationTargetException e){
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }catch(IllegalAccessException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Task wrap(Object scheduled){
+        return () -> invoke(taskCancel, scheduled);
+    }
+
+    @Override
+    public boolean isRegionThreaded(){
+        return true;
+    }
+
+    @Override
+    public Task runTimer(Runnable task, long delayTicks, long periodTicks){
+        Consumer<Object> consumer = scheduled -> task.run();
+        return wrap(invoke(globalRunAtFixedRate, globalScheduler, plugin, consumer, Math.max(1, delayTicks), Math.max(1, periodTicks)));
+    }
+
+    @Override
+    public Task runAsyncTimer(Runnable task, long delayTicks, long periodTicks){
+        Consumer<Object> consumer = scheduled -> task.run();
+        return wrap(invoke(asyncRunAtFixedRate, asyncScheduler, plugin, consumer, Math.max(1, delayTicks) * MILLIS_PER_TICK, Math.max(1, periodTicks) * MILLIS_PER_TICK, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public void runAt(Location location, Runnable task){
+        if((Boolean) invoke(isOwnedByCurrentRegionLocation, plugin.getServer(), location)) task.run();
+        else invoke(regionExecute, regionScheduler, plugin, location, task);
+    }
+
+    @Override
+    public void runFor(Entity entity, Runnable task){
+        if((Boolean) invoke(isOwnedByCurrentRegionEntity, plugin.getServer(), entity)) task.run();
+        else invoke(entityExecute, invoke(entityGetScheduler, entity), plugin, task, null, 1L);
+    }
+}
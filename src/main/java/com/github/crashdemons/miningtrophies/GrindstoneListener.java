@@ -0,0 +1,73 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import com.github.crashdemons.miningtrophies.metrics.ExitReason;
+import com.github.crashdemons.miningtrophies.metrics.ListenerMetrics;
+import com.github.crashdemons.miningtrophies.metrics.PluginMetrics;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Removes the trophy properties from trophies taken out of a grindstone, so they can be used as ordinary items.
+ * @author crash
+ */
+public final class GrindstoneListener implements Listener {
+    private final PluginMetrics metrics;
+
+    /**
+     * Constructs the listener
+     * @param metrics the metrics to record grindstone clicks to
+     */
+    public GrindstoneListener(PluginMetrics metrics){
+        this.metrics = metrics;
+    }
+
+    @EventHandler
+    public void onGrindstone(InventoryClickEvent event) {
+        ListenerMetrics listenerMetrics = metrics.getGrindstone();
+        long start = metrics.start();
+        ExitReason reason = ExitReason.ERROR;
+        try{
+            reason = handleGrindstone(event);
+        }finally{
+            listenerMetrics.record(reason, start);
+        }
+    }
+    
+    private ExitReason handleGrindstone(InventoryClickEvent event) {
+        Inventory clickedInventory = event.getClickedInventory();
+        if(clickedInventory==null) return ExitReason.MISSING_TARGET;
+        if (clickedInventory.getType() == InventoryType.GRINDSTONE && event.getSlotType() == InventoryType.SlotType.RESULT) {
+            ItemStack currentStack = event.getCurrentItem();
+            if(currentStack==null){
+                return ExitReason.MISSING_TARGET;
+            }
+            TrophyDefinition trophy = TrophyRegistry.getCurrent().identifyTrophyItem(currentStack);
+            if(trophy==null){//not a trophy
+                return ExitReason.NOT_TROPHY_ITEM;
+            }
+            
+            currentStack.setItemMeta(null);//clear trophy lore/meta
+            event.setCurrentItem(currentStack);//set the item in the event
+            event.getClickedInventory().setItem(event.getSlot(), currentStack);//set the item in the menu
+            
+            if(event.getWhoClicked() instanceof Player){//make sure the player sees what we changed
+                Player p = (Player) event.getWhoClicked();
+                p.updateInventory();
+            }
+            
+            //event.setResult(Event.Result.DENY);// can be used to block the grindstone-ing if we need
+            return ExitReason.GRINDSTONE_CLEARED;
+        }
+        return ExitReason.NOT_GRINDSTONE;
+    }
+}
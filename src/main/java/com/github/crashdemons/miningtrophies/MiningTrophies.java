@@ -5,83 +5,384 @@
  */
 package com.github.crashdemons.miningtrophies;
 
+import com.github.crashdemons.miningtrophies.events.BatchTrophyRollEvent;
 import com.github.crashdemons.miningtrophies.events.BlockDropTrophyEvent;
-import com.github.crashdemons.miningtrophies.events.SimulatedBlockBreakEvent;
-import com.github.crashdemons.miningtrophies.events.TrophyRollEvent;
+import com.github.crashdemons.miningtrophies.metrics.ExitReason;
+import com.github.crashdemons.miningtrophies.metrics.LatencyHistogram;
+import com.github.crashdemons.miningtrophies.metrics.ListenerMetrics;
+import com.github.crashdemons.miningtrophies.metrics.PluginMetrics;
+import com.github.crashdemons.miningtrophies.modifiers.DropRateModifierPipeline;
+import com.github.crashdemons.miningtrophies.stats.LeaderboardEntry;
+import com.github.crashdemons.miningtrophies.stats.StatsLog;
+import com.github.crashdemons.miningtrophies.stats.TrophyStat;
+import com.github.crashdemons.miningtrophies.stats.TrophyStatistics;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
-import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.enchantments.Enchantment;
-import org.bukkit.entity.Item;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
-import org.bukkit.event.block.BlockBreakEvent;
-import org.bukkit.event.block.BlockDamageEvent;
-import org.bukkit.event.block.BlockPlaceEvent;
-import org.bukkit.event.entity.ItemSpawnEvent;
-import org.bukkit.event.inventory.InventoryClickEvent;
-import org.bukkit.event.inventory.InventoryType;
-import org.bukkit.event.player.PlayerAnimationEvent;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 
 /**
  * The main plugin class for MiningTrophies
  * @author crash
  */
-public class MiningTrophies extends JavaPlugin implements Listener{
+public class MiningTrophies extends JavaPlugin {
 
-    private final Random rand = new Random();
+    private volatile RollSource rollSource = ThreadLocalRollSource.INSTANCE;
     
-    private boolean NCPEnabled = false;
+    private volatile boolean NCPEnabled = false;
     
+    private volatile TrophySettings settings;
+    private final TrophyItemCache itemCache = new TrophyItemCache();
+    private TaskScheduler scheduler = null;
+    private TrophyBroadcaster broadcaster = null;//created on enable, since it keeps a reference to the plugin
+    private SideEffectScheduler sideEffects = null;//created on enable, since it needs the plugin's logger
+    private final PermissionCache permissionCache = new PermissionCache();
+    private ProtectionChecker protectionChecker = null;//created on enable, since it keeps a reference to the plugin
+    private final PityTracker pityTracker = new PityTracker();
+    private PityStore pityStore = null;
+    private TaskScheduler.Task pitySaveTask = null;
+    private final TrophyStatistics statistics = new TrophyStatistics();
+    private StatsLog statsLog = null;
+    private TaskScheduler.Task statsFlushTask = null;
+    private final TrophyLeaderboard leaderboard = new TrophyLeaderboard(1);
+    private boolean leaderboardLoaded = false;
+    
+    private final PluginMetrics metrics = new PluginMetrics();
+    private boolean metricsCountersRegistered = false;
+    private TaskScheduler.Task metricsFileTask = null;
+    
+    private TrophyDropListener dropListener = null;//created on enable, since the listeners keep a reference to the plugin
+    private DroppedTrophyListener droppedTrophyListener = null;
+    private final TrophyPlacementListener placementListener = new TrophyPlacementListener(metrics);
+    private final GrindstoneListener grindstoneListener = new GrindstoneListener(metrics);
+    private final PlacedBlockTracker placedBlockTracker = new PlacedBlockTracker();
+    private final Set<Listener> registeredListeners = new HashSet<>();
+
+    /**
+     * Constructs the plugin. Called by the server's plugin loader.
+     */
+    public MiningTrophies(){
+        super();
+    }
+
+    /**
+     * Constructs the plugin outside of a plugin class loader, so that benchmarks can run the real plugin against a stub server.
+     * @param loader the plugin loader
+     * @param description the plugin description
+     * @param dataFolder the folder for the configuration and data files
+     * @param file the plugin jar
+     */
+    protected MiningTrophies(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file){
+        super(loader, description, dataFolder, file);
+    }
+
     /**
      * Checks whether the plugin has detected NoCheatPlus and will attempt to support it.
      * @return whether nocheatplus was detected
      */
     public boolean isNCPEnabled(){ return NCPEnabled; }
     
+    /**
+     * Gets the scheduler used for the plugin's tasks and for side effects that must run on the thread owning a location or entity.
+     * On a region-threaded server this uses the region and entity schedulers.
+     * @return the task scheduler
+     */
+    public TaskScheduler getTaskScheduler(){ return scheduler; }
+    
+    /**
+     * Gets the settings parsed from the current configuration.
+     * The returned object is replaced (not modified) when the configuration is reloaded.
+     * @return the current settings
+     */
+    public TrophySettings getSettings(){ return settings; }
+    
+    /**
+     * Gets the tracker of attempts since each player last received each trophy type, used for bad-luck protection.
+     * @return the pity tracker
+     */
+    public PityTracker getPityTracker(){ return pityTracker; }
+    
+    /**
+     * Gets the per-player and per-trophy statistics counters.
+     * @return the statistics
+     */
+    public TrophyStatistics getStatistics(){ return statistics; }
+    
+    /**
+     * Gets the top trophy collectors, overall and per trophy type. Leaderboard queries are safe to make from any thread.
+     * @return the leaderboards
+     */
+    public TrophyLeaderboard getLeaderboard(){ return leaderboard; }
+    
+    /**
+     * Gets the checker that lets protection plugins veto trophy drops, including counts of how often they do.
+     * @return the protection checker, or null if the plugin has not been enabled yet
+     */
+    public ProtectionChecker getProtectionChecker(){ return protectionChecker; }
+    
+    /**
+     * Gets the tracker of trophy blocks placed by players, which do not roll for trophies when mined.
+     * @return the placed block tracker
+     */
+    public PlacedBlockTracker getPlacedBlockTracker(){ return placedBlockTracker; }
+    
+    /**
+     * Gets the invocation counts, exit reasons and latencies of the plugin's event listeners.
+     * @return the plugin metrics
+     */
+    public PluginMetrics getMetrics(){ return metrics; }
+    
+    /**
+     * Gets the source of random values used for trophy drop rolls.
+     * @return the roll source
+     */
+    public RollSource getRollSource(){ return rollSource; }
+    
+    /**
+     * Sets the source of random values used for trophy drop rolls, for example a SeededRollSource to make rolls reproducible.
+     * On a region-threaded (Folia) server, rolls are made by every region thread at once, so the source must be thread-safe.
+     * A SeededRollSource is not, so there each thread rolls with its own {@link SeededRollSource#split()} of it,
+     * and {@link #getRollSource()} returns the wrapper that does this.
+     * @param source the roll source to use, or null to restore the default source.
+     */
+    public void setRollSource(RollSource source){
+        if(source instanceof SeededRollSource && FoliaTaskScheduler.isSupported()) source = new PerThreadRollSource((SeededRollSource) source);
+        rollSource = source==null ? ThreadLocalRollSource.INSTANCE : source;
+    }
+    
+    /**
+     * Gets the number of item spawns checked by the dropped-trophy fix.
+     * @return the number of item spawns seen
+     */
+    public long getSpawnsSeen(){ return droppedTrophyListener==null ? 0 : droppedTrophyListener.getSpawnsSeen(); }
+    
+    /**
+     * Gets the number of item spawns rejected by material alone, without inspecting the item meta.
+     * @return the number of item spawns prefiltered
+     */
+    public long getSpawnsPrefiltered(){ return droppedTrophyListener==null ? 0 : droppedTrophyListener.getSpawnsPrefiltered(); }
+    
+    /**
+     * Gets the number of dropped trophies that were replaced with a freshly created trophy item.
+     * @return the number of item spawns repaired
+     */
+    public long getSpawnsRepaired(){ return droppedTrophyListener==null ? 0 : droppedTrophyListener.getSpawnsRepaired(); }
+    
+    PermissionCache getPermissionCache(){ return permissionCache; }
+    
+    TrophyBroadcaster getBroadcaster(){ return broadcaster; }
+    
     
     @Override
     public void onEnable(){
         getLogger().info("Enabling...");
-        saveDefaultConfig();
-        reloadConfig();
-        
+        scheduler = TaskScheduler.create(this);
+        if(scheduler.isRegionThreaded()) getLogger().info("Region-threaded server detected, using region schedulers");
+        if(broadcaster==null) broadcaster = new TrophyBroadcaster(this);
+        if(sideEffects==null) sideEffects = new SideEffectScheduler(getLogger());
+        if(protectionChecker==null) protectionChecker = new ProtectionChecker(this);
+        if(dropListener==null) dropListener = new TrophyDropListener(this);
+        if(droppedTrophyListener==null) droppedTrophyListener = new DroppedTrophyListener(this);
         if (getServer().getPluginManager().getPlugin("NoCheatPlus") != null) {
             NCPEnabled = true;
             getLogger().info("NCP Support Enabled");
         }
+        saveDefaultConfig();
+        pityStore = new PityStore(new File(getDataFolder(), "pity.dat"), getLogger());
+        pityStore.load(pityTracker);
+        pityStore.start();
+        statsLog = new StatsLog(new File(getDataFolder(), "stats.log"), getLogger());
+        statsLog.load(statistics);
+        statsLog.start();
+        if(!metricsCountersRegistered){//the counted components outlive a disable and re-enable, so their counters are registered once
+            registerMetricsCounters();
+            metricsCountersRegistered = true;
+        }
+        loadConfiguration();
         
-        getServer().getPluginManager().registerEvents(this, this);
+        setRegistered(permissionCache, true);
         getLogger().info("Enabled.");
         
     }
 
+    private void loadConfiguration(){
+        reloadConfig();
+        settings = TrophySettings.fromConfig(getConfig());
+        TrophyRegistry registry = settings.getRegistry();
+        for(String warning : registry.getWarnings()) getLogger().warning("Invalid trophy configuration: "+warning);
+        TrophyRegistry.setCurrent(registry);
+        itemCache.invalidate(registry);
+        if(settings.isBroadcast()) broadcaster.start(settings, scheduler);
+        else broadcaster.stop();
+        sideEffects.start(scheduler, settings.getDeferredTickBudget());
+        permissionCache.setTimeToLive(settings.getPermissionCacheTime());
+        protectionChecker.configure(settings);
+        startPitySaves();
+        startStatsFlushes();
+        metrics.setTimingEnabled(settings.isMetricsTiming());
+        startMetricsFile();
+        updateListeners();
+        int leaderboardSize = Math.max(1, settings.getLeaderboardSize());
+        if(!leaderboardLoaded || leaderboard.getCapacity()!=leaderboardSize){
+            leaderboard.rebuild(statistics, leaderboardSize);
+            leaderboardLoaded = true;
+        }
+    }
+    
+    private static String micros(long nanos){
+        return String.format("%.1fus", nanos / 1000.0);
+    }
+    
+    private void registerMetricsCounters(){
+        metrics.registerCounter("item_spawns_seen", "Item spawns checked by the dropped-trophy fix.", this::getSpawnsSeen);
+        metrics.registerCounter("item_spawns_prefiltered", "Item spawns rejected by material alone.", this::getSpawnsPrefiltered);
+        metrics.registerCounter("item_spawns_repaired", "Dropped trophies replaced with a fresh trophy item.", this::getSpawnsRepaired);
+        metrics.registerCounter("protection_checks", "Protection checks made before dropping a trophy.", protectionChecker::getChecks);
+        metrics.registerCounter("protection_simulations", "Simulated block breaks fired for protection checks.", protectionChecker::getSimulations);
+        metrics.registerCounter("protection_vetoes", "Simulated block breaks cancelled by another plugin.", protectionChecker::getSimulationsCancelled);
+        metrics.registerCounter("protection_cache_hits", "Protection checks answered from the cache.", protectionChecker::getCacheHits);
+        metrics.registerCounter("side_effects_submitted", "Trophy side effects (announcements and statistics) submitted.", sideEffects::getSubmitted);
+        metrics.registerCounter("side_effects_executed", "Trophy side effects run.", sideEffects::getExecuted);
+        metrics.registerCounter("side_effects_failed", "Trophy side effects that threw an exception.", sideEffects::getFailed);
+        metrics.registerCounter("side_effects_ticks_over_budget", "Ticks that left trophy side effects queued for the next tick.", sideEffects::getTicksOverBudget);
+        for(TrophyType type : TrophyType.values()){
+            metrics.registerCounter("trophies_won_"+type.name().toLowerCase(), "Trophies won from "+type.name().toLowerCase()+" blocks.", () -> statistics.getTotal(type, TrophyStat.TROPHIES_WON));
+        }
+    }
+    
+    private void updateListeners(){
+        setRegistered(dropListener, settings.hasEnabledTrophies());
+        setRegistered(droppedTrophyListener, settings.isFixDroppedTrophies());
+        setRegistered(placementListener, settings.isDisablePlacement());
+        setRegistered(grindstoneListener, true);
+        boolean tracking = registeredListeners.contains(placedBlockTracker);
+        setRegistered(placedBlockTracker, settings.isTrackPlacedBlocks());
+        if(settings.isTrackPlacedBlocks() && !tracking && !scheduler.isRegionThreaded()) placedBlockTracker.loadAll(getServer().getWorlds());//chunks of other regions can't be read from here
+        else if(!settings.isTrackPlacedBlocks() && tracking) placedBlockTracker.clear();
+    }
+    
+    private void setRegistered(Listener listener, boolean registered){
+        if(registered && registeredListeners.add(listener)){
+            getServer().getPluginManager().registerEvents(listener, this);
+        }else if(!registered && registeredListeners.remove(listener)){
+            HandlerList.unregisterAll(listener);
+        }
+    }
+    
+    private void startMetricsFile(){
+        if(metricsFileTask!=null){
+            metricsFileTask.cancel();
+            metricsFileTask = null;
+        }
+        String name = settings.getMetricsFile();
+        if(name.isEmpty()) return;
+        File file = new File(getDataFolder(), name);
+        long period = Math.max(1, settings.getMetricsFileInterval()) * 20L;
+        metricsFileTask = scheduler.runAsyncTimer(() -> writeMetricsFile(file), period, period);
+    }
+    
+    private void writeMetricsFile(File file){
+        try{
+            metrics.writePrometheusFile(file);
+        }catch(IOException e){
+            getLogger().log(Level.WARNING, "Could not write metrics to "+file, e);
+        }
+    }
+    
+    private void startStatsFlushes(){
+        if(statsFlushTask!=null){
+            statsFlushTask.cancel();
+            statsFlushTask = null;
+        }
+        flushStats();
+        if(!settings.isStatsEnabled()) return;
+        long period = Math.max(1, settings.getStatsFlushInterval()) * 20L;
+        statsFlushTask = scheduler.runTimer(this::flushStats, period, period);
+    }
+    
+    private void flushStats(){
+        if(statsLog!=null && statistics.hasChanges()) statsLog.appendAsync(statistics.drainChanges());
+    }
+    
+    private void startPitySaves(){
+        if(pitySaveTask!=null){
+            pitySaveTask.cancel();
+            pitySaveTask = null;
+        }
+        savePity();
+        if(!settings.isPityEnabled()) return;
+        long period = Math.max(1, settings.getPitySaveInterval()) * 20L;
+        pitySaveTask = scheduler.runTimer(this::savePity, period, period);
+    }
+    
+    private void savePity(){
+        if(pityStore!=null && pityTracker.hasChanges()) pityStore.saveAsync(pityTracker.drainChanges());
+    }
+
     @Override
     public void onDisable(){
         getLogger().info("Disabling...");
+        if(sideEffects!=null) sideEffects.stop();//queued statistics must be recorded before they are flushed below
+        if(broadcaster!=null) broadcaster.stop();
+        placedBlockTracker.clear();
+        registeredListeners.clear();//listeners are unregistered by the server when the plugin is disabled
+        if(metricsFileTask!=null){
+            metricsFileTask.cancel();
+            metricsFileTask = null;
+        }
+        if(pitySaveTask!=null){
+            pitySaveTask.cancel();
+            pitySaveTask = null;
+        }
+        savePity();
+        if(pityStore!=null) pityStore.stop();
+        if(statsFlushTask!=null){
+            statsFlushTask.cancel();
+            statsFlushTask = null;
+        }
+        flushStats();
+        if(statsLog!=null) statsLog.stop();
         saveConfig();
         getLogger().info("Disabled.");
     }
     
+    /**
+     * Creates a new trophy itemstack of the given type using the configured item options.
+     * @param type the type of trophy
+     * @return a new itemstack that the caller may freely modify
+     */
     public ItemStack createTrophyDrop(TrophyType type){
-        boolean addenchants=getConfig().getBoolean("addenchants");
-        boolean addeffects=getConfig().getBoolean("addeffects");
-        boolean addlore=getConfig().getBoolean("addlore");
-        return type.createDrop(addenchants,addeffects,addlore);
+        TrophySettings current = settings;
+        return itemCache.createDrop(type,current.isAddEnchants(),current.isAddEffects(),current.isAddLore());
+    }
+    
+    /**
+     * Creates a new trophy itemstack of the given trophy using the configured item options.
+     * @param trophy the trophy definition
+     * @return a new itemstack that the caller may freely modify
+     */
+    public ItemStack createTrophyDrop(TrophyDefinition trophy){
+        TrophySettings current = settings;
+        return itemCache.createDrop(trophy,current.isAddEnchants(),current.isAddEffects(),current.isAddLore());
     }
     
     
@@ -90,7 +391,7 @@ public class MiningTrophies extends JavaPlugin implements Listener{
         if (!cmd.getName().equalsIgnoreCase("MiningTrophies")) {
             return false;
         }
-        // [reload|give] [args]
+        // [reload|give|top|stats] [args]
         if(args.length<1) return false;
         String subcommand = args[0];
         
@@ -100,7 +401,7 @@ public class MiningTrophies extends JavaPlugin implements Listener{
                     sender.sendMessage("You do not have permission to use this command.");
                     return true;
                 }
-                reloadConfig();
+                loadConfiguration();
                 sender.sendMessage("["+label+"] Reloaded config.");
                 return true;
             case "give":
@@ -112,10 +413,8 @@ public class MiningTrophies extends JavaPlugin implements Listener{
                 String targetMessage="";
                 CommandSender target = sender;
               
-                TrophyType type;
-                try{
-                    type = TrophyType.valueOf(args[1].toUpperCase());
-                }catch(Exception e){
+                TrophyDefinition trophy = settings.getRegistry().get(args[1]);
+                if(trophy==null){
                     sender.sendMessage("Unknown trophy type: "+args[1]);
                     return true;
                 }
@@ -138,10 +437,58 @@ public class MiningTrophies extends JavaPlugin implements Listener{
                 Player player = (Player) target;
                
 
-                ItemStack item = createTrophyDrop(type);
+                ItemStack item = createTrophyDrop(trophy);
                 item.setAmount(amount);
                 InventoryManager.addItem(player, item);
-                sender.sendMessage(targetMessage+"Gave "+amount+" "+type.getDropName());
+                sender.sendMessage(targetMessage+"Gave "+amount+" "+trophy.getDropName());
+                break;
+            case "top":
+                if(!sender.hasPermission("miningtrophies.top")){
+                    sender.sendMessage("You do not have permission to use this command.");
+                    return true;
+                }
+                TrophyDefinition topTrophy = null;
+                if(args.length>=2){
+                    topTrophy = settings.getRegistry().get(args[1]);
+                    if(topTrophy==null){
+                        sender.sendMessage("Unknown trophy type: "+args[1]);
+                        return true;
+                    }
+                    if(topTrophy.getType()==null){//the leaderboard only ranks the built-in trophy types
+                        sender.sendMessage("There is no leaderboard for "+topTrophy.getDropName()+", only for the built-in trophies.");
+                        return true;
+                    }
+                }
+                List<LeaderboardEntry> top = topTrophy==null ? leaderboard.getTop(-1) : leaderboard.getTop(topTrophy.getType(), -1);
+                sender.sendMessage("["+label+"] Top trophy collectors"+(topTrophy==null ? "" : " ("+topTrophy.getDropName()+")")+":");
+                if(top.isEmpty()) sender.sendMessage("Nobody has found a trophy yet.");
+                int rank = 1;
+                for(LeaderboardEntry entry : top){
+                    String name = Bukkit.getOfflinePlayer(entry.getPlayer()).getName();
+                    sender.sendMessage(rank+". "+(name==null ? entry.getPlayer().toString() : name)+" - "+entry.getCount());
+                    rank++;
+                }
+                return true;
+            case "stats":
+                if(!sender.hasPermission("miningtrophies.stats")){
+                    sender.sendMessage("You do not have permission to use this command.");
+                    return true;
+                }
+                sender.sendMessage("["+label+"] Listener metrics"+(metrics.isTimingEnabled() ? "" : " (timing disabled)")+":");
+                for(ListenerMetrics listener : metrics.getListeners()){
+                    LatencyHistogram latency = listener.getLatency();
+                    sender.sendMessage(listener.getName()+": "+listener.getInvocations()+" calls, p50 "+micros(latency.getValueAtQuantile(0.5))+" p99 "+micros(latency.getValueAtQuantile(0.99))+" max "+micros(latency.getMax()));
+                    StringBuilder exits = new StringBuilder("  exits:");
+                    for(ExitReason exitReason : ExitReason.values()){
+                        long count = listener.getExits(exitReason);
+                        if(count>0) exits.append(' ').append(exitReason.getLabel()).append('=').append(count);
+                    }
+                    sender.sendMessage(exits.toString());
+                }
+                if(settings.isTrackPlacedBlocks()) sender.sendMessage("placed blocks: "+placedBlockTracker.getTrackedChunkCount()+" chunks tracked");
+                sender.sendMessage("side effects: "+sideEffects.getExecuted()+" run, "+sideEffects.getPending()+" pending, "+sideEffects.getFailed()+" failed, "+sideEffects.getTicksOverBudget()+" ticks over budget");
+                sender.sendMessage("protection: "+protectionChecker.getChecks()+" checks, "+protectionChecker.getSimulations()+" simulations, "+protectionChecker.getSimulationsCancelled()+" vetoes, "+protectionChecker.getCacheHits()+" cache hits");
+                return true;
         }
         
         
@@ -154,7 +501,7 @@ public class MiningTrophies extends JavaPlugin implements Listener{
             return true;
         }
         if(args[0].equalsIgnoreCase("reload")){
-            reloadConfig();
+            loadConfiguration();
             sender.sendMessage("["+label+"] Reloaded config.");
             return true;
         }
@@ -162,191 +509,126 @@ public class MiningTrophies extends JavaPlugin implements Listener{
     }
     
     
-    @EventHandler(ignoreCancelled=true,priority=EventPriority.LOWEST)
-    public void onBlockPlace(BlockPlaceEvent event){
-        ItemStack item = event.getItemInHand();
-        if(item==null || item.getType().isAir()) return;
-        if(!item.hasItemMeta()) return;
-        ItemMeta meta = item.getItemMeta();
-        if(!meta.hasLore()) return;
-        
-        if(!getConfig().getBoolean("disableplacement")) return;
-        
-        for(String line : meta.getLore()){
-            if(line.contains("Mining Trophy")){
-                event.setCancelled(true);
-                return;
+    /**
+     * Rolls for trophies from many blocks broken by one player in a single action, such as by vein-mining, tree-felling or excavating plugins.
+     * 
+     * The player and tool are checked once, the successes for each trophy type are sampled from a binomial distribution instead of rolling every block,
+     * a single BatchTrophyRollEvent is fired instead of a TrophyRollEvent per block, and the protection check is made once per trophy type that succeeded.
+     * Trophies of the same type are merged into stacks and dropped at the first block of that type.
+     * This should be called before the blocks are removed, and the blocks should not also be rolled through a BlockBreakEvent.
+     * @param player the player that broke the blocks
+     * @param blocks the blocks broken
+     * @return copies of the trophy stacks that were dropped
+     */
+    public List<ItemStack> rollBlocks(Player player, Collection<? extends Block> blocks){
+        ArrayList<ItemStack> dropped = new ArrayList<>();
+        if(player==null || blocks==null || blocks.isEmpty()) return dropped;
+        TrophySettings current = settings;
+        if (player.getGameMode() == GameMode.CREATIVE) return dropped;
+        
+        //group the blocks by trophy type
+        TrophyType[] types = TrophyType.values();
+        int[] attempts = new int[types.length];
+        Block[] firstBlocks = new Block[types.length];
+        ArrayList<Block> rolled = new ArrayList<>();
+        for(Block block : blocks){
+            if(block==null) continue;
+            TrophyDefinition trophy = current.getRegistry().get(block.getType());
+            TrophyType type = trophy==null ? null : trophy.getType();//trophies without a TrophyType can't be reported in the batch event
+            if(type==null || trophy.getDropRate()==0.0) continue;
+            if(current.isTrackPlacedBlocks() && placedBlockTracker.isPlaced(block)) continue;
+            if(attempts[type.ordinal()]==0) firstBlocks[type.ordinal()] = block;
+            attempts[type.ordinal()]++;
+            rolled.add(block);
+        }
+        if(rolled.isEmpty()) return dropped;
+        UUID playerId = player.getUniqueId();
+        boolean statsEnabled = current.isStatsEnabled();
+        if(statsEnabled){
+            for(TrophyType type : types){
+                if(attempts[type.ordinal()]>0) statistics.record(playerId, type, TrophyStat.BLOCKS_MINED, attempts[type.ordinal()]);
             }
         }
-    }
-    
-    @EventHandler(ignoreCancelled=true,priority=EventPriority.LOWEST)
-    public void onItemSpawn(ItemSpawnEvent event){
-        if(!getConfig().getBoolean("fixdroppedtrophies")) return;
-        Item entity = event.getEntity();
-        ItemStack stack = entity.getItemStack();
-        TrophyType type = TrophyType.identifyTrophyItem(stack);
-        if(type==null) return;
-        
-        int oldAmount = stack.getAmount();
-        
-        ItemStack newStack = createTrophyDrop(type);
-        if(newStack==null){ getLogger().warning("replacement trophy item was null!"); return; }
-        if(newStack.getType().isAir()){getLogger().warning("replacement trophy item was air!"); return; }
-        
-        newStack.setAmount(oldAmount);
-        entity.setItemStack(newStack);
-        
-    }
-
-    @EventHandler(ignoreCancelled=true, priority = EventPriority.LOWEST)
-    public void onBlockBreakEvent(BlockBreakEvent event){
-        if(event instanceof SimulatedBlockBreakEvent) return;
-        Block block = event.getBlock();
-        if(block==null) return;
-        TrophyType type = TrophyType.get(block.getType());
-        if(type==null) return;
-        Player player = event.getPlayer();
-        if(player==null) return;
-        if(event.isCancelled()) return;
-        if (player.getGameMode() == GameMode.CREATIVE) return;//players in creative destroy blocks, they don't mine them.
-        if(!player.hasPermission("miningtrophies.canberewarded")) return;//can't get rewards
-        
         
         ItemStack tool = player.getEquipment().getItemInMainHand();
-        double fortunerate=1;
+        int lootingLevel=0;
         if (tool != null) {
-            if(tool.getType()==Material.SHEARS) return;//shears are not permitted for trophies
-            if(tool.getEnchantmentLevel(Enchantment.SILK_TOUCH)>0) return;//silk touch is not permitted to generate rewards
-            fortunerate = 1 + (getConfig().getDouble("fortunerate") * tool.getEnchantmentLevel(Enchantment.LOOTING));
+            if(!TrophyRoll.isPermittedTool(tool.getType(), tool.getEnchantmentLevel(Enchantment.SILK_TOUCH))) return dropped;
+            lootingLevel = tool.getEnchantmentLevel(Enchantment.LOOTING);
         }
-        
-        
-        //check drop rates
-        Double droprollOriginal = rand.nextDouble();
-        Double droproll = droprollOriginal;
-        Double droprateOriginal = getConfig().getDouble( type.getDropConfigName() );
-        Double droprateEffective = droprateOriginal;
-        if(droprateEffective==0.0) return;
-        boolean playerAlwaysRewarded = player.hasPermission("miningtrophies.alwaysrewarded");
-        if(playerAlwaysRewarded) droproll=0.00;//this player always gets good rolls.
-        droprateEffective *= fortunerate;
-        
-        boolean droprollSuccess = droproll < droprateEffective;
-        TrophyRollEvent rollEvent = new TrophyRollEvent(player,block,playerAlwaysRewarded,fortunerate,droprollOriginal,droproll,droprateOriginal,droprateEffective,droprollSuccess);
-        getServer().getPluginManager().callEvent(rollEvent);
-        if(!rollEvent.succeeded()){//bad roll
-            //getLogger().info("Roll wasn't lucky");
-            return;
+        if(!permissionCache.canBeRewarded(player)) return dropped;
+        
+        //roll every trophy type at once
+        RollSource source = rollSource;
+        boolean playerAlwaysRewarded = permissionCache.isAlwaysRewarded(player);
+        DropRateModifierPipeline pipeline = current.getModifierPipeline();
+        double[] droprates = new double[types.length];
+        int[] successes = new int[types.length];
+        for(TrophyType type : types){
+            int count = attempts[type.ordinal()];
+            if(count==0) continue;
+            if(statsEnabled) statistics.record(playerId, type, TrophyStat.ROLLS_ATTEMPTED, count);
+            int pityAttempts = current.isPityEnabled() ? pityTracker.recordAttempts(playerId, type, count) - count + 1 : 0;//pity as of the first block of the batch
+            double droprate = TrophyRoll.getEffectiveDropRate(current, type, lootingLevel, pipeline.getFactor(firstBlocks[type.ordinal()]), pityAttempts);
+            droprates[type.ordinal()] = droprate;
+            successes[type.ordinal()] = playerAlwaysRewarded ? count : source.nextBinomial(count, droprate);
         }
-        
-        
-        PluginManager pm = getServer().getPluginManager();
-        boolean wasExemptFromNCP = true;
-        /*if (NCPEnabled) {
-            wasExemptFromNCP = NCPExemptionManager.isExempted(player, CheckType.BLOCKBREAK_FASTBREAK);
-            //getLogger().info("NCP Exemption: "+wasExemptFromNCP);
-            if (!wasExemptFromNCP){
-                //getLogger().info("NCP Exemption added");
-                NCPExemptionManager.exemptPermanently(player, CheckType.BLOCKBREAK_FASTBREAK);
-            }
-        }*/
-        pm.callEvent(new PlayerAnimationEvent(player));
-        pm.callEvent(new BlockDamageEvent(player, block, player.getEquipment().getItemInMainHand(), true));
-        SimulatedBlockBreakEvent simulatedbreak = new SimulatedBlockBreakEvent(block, player);
-        pm.callEvent(simulatedbreak);
-        
-        /*if (NCPEnabled && !wasExemptFromNCP){
-            NCPExemptionManager.unexempt(player, CheckType.BLOCKBREAK_FASTBREAK);
-            //getLogger().info("NCP Exemption removed");
-        }*/
-        
-        
-        
-        
-        if(simulatedbreak.isCancelled()){
-            //getLogger().info("Simulated block break cancelled.");
-            event.setCancelled(true);
-            return;
+        if(BatchTrophyRollEvent.getHandlerList().getRegisteredListeners().length > 0){
+            BatchTrophyRollEvent rollEvent = new BatchTrophyRollEvent(player, rolled, attempts, droprates, successes, playerAlwaysRewarded, source);
+            getServer().getPluginManager().callEvent(rollEvent);
+            if(rollEvent.isCancelled()) return dropped;
         }
         
-        
-        ItemStack item = createTrophyDrop(type);
-        
-        BlockDropTrophyEvent trophyEvent = new BlockDropTrophyEvent(block,player,item);
-        getServer().getPluginManager().callEvent(trophyEvent);
-        if (trophyEvent.isCancelled()){//another plugin caught and cancelled the trophy event - don't drop.
-            //getLogger().info("Trophy event cancelled.");
-            return;
-        }
-        
-        
-        //broadcast message about the trophy - rouugh code adapted from PH, needs ironing out
-        FileConfiguration configFile = getConfig();
-        if (configFile.getBoolean("broadcast")) {
-            String message = player.getDisplayName()+" found a "+type.getDropName()+".";
-
-            int broadcastRange = configFile.getInt("broadcastrange");
-            if (broadcastRange > 0) {
-                broadcastRange *= broadcastRange;
-                Location location = player.getLocation();
-                List<Player> players = player.getWorld().getPlayers();
-
-                for (Player loopPlayer : players) {
-                    try{
-                        if (location.distanceSquared(loopPlayer.getLocation()) <= broadcastRange) {
-                            loopPlayer.sendMessage(message);
-                        }
-                    }catch(IllegalArgumentException e){
-                        //entities are in different worlds
-                    }
-                }
-            } else {
-                getServer().broadcastMessage(message);
+        //drop merged stacks of each trophy type that succeeded
+        for(TrophyType type : types){
+            int remaining = successes[type.ordinal()];
+            if(remaining==0) continue;
+            Block block = firstBlocks[type.ordinal()];
+            if(!protectionChecker.check(player, block)) continue;
+            TrophyDefinition definition = current.getRegistry().get(type);
+            ItemStack trophy = createTrophyDrop(definition);
+            int stackSize = Math.max(1, trophy.getMaxStackSize());
+            int won = 0;
+            Location location = block.getLocation();
+            while(remaining>0){
+                ItemStack item = trophy.clone();
+                item.setAmount(Math.min(stackSize, remaining));
+                remaining -= item.getAmount();
+                BlockDropTrophyEvent trophyEvent = new BlockDropTrophyEvent(block,player,item);
+                getServer().getPluginManager().callEvent(trophyEvent);
+                if(trophyEvent.isCancelled()) continue;
+                scheduler.runAt(location, () -> location.getWorld().dropItemNaturally(location, item));//the block may be in another region than the player
+                dropped.add(item.clone());//the stack is dropped later, so changes the caller makes to the returned stacks must not reach it
+                won += item.getAmount();
             }
+            if(won==0) continue;
+            if(current.isPityEnabled()) pityTracker.reset(playerId, type);
+            deferTrophyWon(player, definition, won, current);
         }
-        
-        
-        Location location = block.getLocation();
-        
-        if(NCPEnabled){//NCP seems to disable the block-break without cancelling it, but allows the drops.
-            event.setCancelled(true);
-            block.setType(Material.AIR);
-        }
-        //event.setCancelled(true);
-        //getLogger().info("Original break cancelled? "+event.isCancelled());
-        //block.setType(Material.AIR);
-        location.getWorld().dropItemNaturally(location, item);
-        
+        return dropped;
     }
     
-    @EventHandler
-    public void onGrindstone(InventoryClickEvent event) {
-        Inventory clickedInventory = event.getClickedInventory();
-        if(clickedInventory==null) return;
-        if (clickedInventory.getType() == InventoryType.GRINDSTONE && event.getSlotType() == InventoryType.SlotType.RESULT) {
-            ItemStack currentStack = event.getCurrentItem();
-            if(currentStack==null){
-                return;
-            }
-            TrophyType type = TrophyType.identifyTrophyItem(currentStack);
-            if(type==null){//not a trophy
-                return;
-            }
-            
-            currentStack.setItemMeta(null);//clear trophy lore/meta
-            event.setCurrentItem(currentStack);//set the item in the event
-            event.getClickedInventory().setItem(event.getSlot(), currentStack);//set the item in the menu
-            
-            if(event.getWhoClicked() instanceof Player){//make sure the player sees what we changed
-                Player p = (Player) event.getWhoClicked();
-                p.updateInventory();
-            }
-            
-            //event.setResult(Event.Result.DENY);// can be used to block the grindstone-ing if we need
+    /**
+     * Records the statistics and announcement of a trophy win as deferred side effects.
+     * The player's details are read now, because the effects may run on a thread that does not own the player.
+     * @param player the player that won the trophies
+     * @param trophy the trophy won
+     * @param won the number of trophies won
+     * @param current the settings the trophies were won with
+     */
+    void deferTrophyWon(Player player, TrophyDefinition trophy, int won, TrophySettings current){
+        UUID playerId = player.getUniqueId();
+        TrophyType type = trophy.getType();
+        if(current.isStatsEnabled() && type!=null){
+            sideEffects.submit(() -> {
+                statistics.record(playerId, type, TrophyStat.TROPHIES_WON, won);
+                leaderboard.onTrophyWon(playerId, type, statistics);
+            });
+        }
+        if(current.isBroadcast()){
+            String displayName = player.getDisplayName();
+            Location location = player.getLocation();
+            sideEffects.submit(() -> broadcaster.announce(playerId, displayName, location, trophy, current));
         }
     }
- 
-    
-    
 }
@@ -0,0 +1,42 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+/**
+ * Shares a seeded roll source between threads by giving each thread its own {@link SeededRollSource#split()} of it.
+ *
+ * Used on region-threaded servers, where rolls are made by many region threads at once and a single SeededRollSource is not thread-safe.
+ * Each thread's rolls are deterministic given the order in which threads first roll, but the rolls of the whole server are not.
+ * @author crash
+ */
+final class PerThreadRollSource implements RollSource {
+    private final SeededRollSource parent;
+    private final ThreadLocal<SeededRollSource> sources = ThreadLocal.withInitial(this::split);
+
+    /**
+     * Constructs the roll source
+     * @param parent the source that each thread's source is split from
+     */
+    PerThreadRollSource(SeededRollSource parent){
+        this.parent = parent;
+    }
+
+    private SeededRollSource split(){
+        synchronized(parent){//splitting advances the parent
+            return parent.split();
+        }
+    }
+
+    @Override
+    public double nextRoll(){
+        return sources.get().nextRoll();
+    }
+
+    @Override
+    public int nextBinomial(int rolls, double droprate){
+        return sources.get().nextBinomial(rolls, droprate);
+    }
+}
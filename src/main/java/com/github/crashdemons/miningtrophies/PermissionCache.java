@@ -0,0 +1,118 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Caches the results of the reward-related permission checks per player.
+ *
+ * Entries are dropped when a player joins, quits or changes worlds (for per-world permissions), when the cache is cleared on reload,
+ * and after a configurable time-to-live so that changes made by permission plugins are eventually seen.
+ * @author crash
+ */
+public final class PermissionCache implements Listener {
+    private static final String CAN_BE_REWARDED = "miningtrophies.canberewarded";
+    private static final String ALWAYS_REWARDED = "miningtrophies.alwaysrewarded";
+
+    private static final int KNOWN_CAN_BE_REWARDED = 1;
+    private static final int CAN_BE_REWARDED_SET = 2;
+    private static final int KNOWN_ALWAYS_REWARDED = 4;
+    private static final int ALWAYS_REWARDED_SET = 8;
+
+    private final ConcurrentHashMap<UUID,Entry> entries = new ConcurrentHashMap<>();
+    private volatile long ttlNanos = 0;
+
+    private static final class Entry {//only changed by the thread that owns the player
+        volatile long expires;
+        volatile int flags;
+    }
+
+    /**
+     * Sets how long permission results are cached for.
+     * @param seconds the time-to-live in seconds, or 0 (or less) to disable caching.
+     */
+    public void setTimeToLive(int seconds){
+        ttlNanos = seconds > 0 ? seconds * 1_000_000_000L : 0;
+        clear();
+    }
+
+    /**
+     * Discards all cached permission results.
+     */
+    public void clear(){
+        entries.clear();
+    }
+
+    /**
+     * Discards the cached permission results of a player.
+     * @param playerId the UUID of the player
+     */
+    public void invalidate(UUID playerId){
+        entries.remove(playerId);
+    }
+
+    /**
+     * Checks whether the player can be rewarded with trophies at all.
+     * @param player the player to check
+     * @return whether the player has the canberewarded permission
+     */
+    public boolean canBeRewarded(Player player){
+        return check(player, CAN_BE_REWARDED, KNOWN_CAN_BE_REWARDED, CAN_BE_REWARDED_SET);
+    }
+
+    /**
+     * Checks whether the player is always rewarded with trophies.
+     * @param player the player to check
+     * @return whether the player has the alwaysrewarded permission
+     */
+    public boolean isAlwaysRewarded(Player player){
+        return check(player, ALWAYS_REWARDED, KNOWN_ALWAYS_REWARDED, ALWAYS_REWARDED_SET);
+    }
+
+    private boolean check(Player player, String permission, int knownFlag, int valueFlag){
+        long ttl = ttlNanos;
+        if(ttl==0) return player.hasPermission(permission);
+        long now = System.nanoTime();
+        Entry entry = entries.get(player.getUniqueId());
+        if(entry==null){
+            entry = new Entry();
+            entry.expires = now + ttl;
+            entries.put(player.getUniqueId(), entry);
+        }else if(now - entry.expires > 0){
+            entry.expires = now + ttl;
+            entry.flags = 0;
+        }
+        if((entry.flags & knownFlag)==0){
+            entry.flags |= knownFlag;
+            if(player.hasPermission(permission)) entry.flags |= valueFlag;
+        }
+        return (entry.flags & valueFlag)!=0;
+    }
+
+    @EventHandler(priority=EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event){
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority=EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event){
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority=EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event){
+        invalidate(event.getPlayer().getUniqueId());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persists pity attempt counts to a compact binary file.
+ *
+ * Batches of changed counts are merged and written on a single background thread, so saving never blocks the server thread.
+ * The file lists trophy types by name, so counts survive trophy types being added or reordered.
+ * @author crash
+ */
+public final class PityStore {
+    private static final int MAGIC = 0x4D545059;//"MTPY"
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final Logger logger;
+    private final HashMap<UUID,int[]> saved = new HashMap<>();//only used by the writer thread once loading is done
+    private ExecutorService writer = null;
+
+    /**
+     * Constructs the store
+     * @param file the file to save counts to
+     * @param logger the logger to report errors to
+     */
+    public PityStore(File file, Logger logger){
+        this.file = file;
+        this.logger = logger;
+    }
+
+    /**
+     * Loads the saved counts into a tracker. This reads the file on the calling thread and should only be done before saves are started.
+     * @param tracker the tracker to load counts into
+     */
+    public void load(PityTracker tracker){
+        saved.clear();
+        if(!file.exists()) return;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            if(in.readInt()!=MAGIC) throw new IOException("not a pity data file");
+            int version = in.readInt();
+            if(version!=VERSION) throw new IOException("unsupported pity data version "+version);
+            int typeCount = in.readInt();
+            TrophyType[] types = new TrophyType[typeCount];
+            for(int i=0;i<typeCount;i++){
+                String name = in.readUTF();
+                try{
+                    types[i] = TrophyType.valueOf(name);
+                }catch(IllegalArgumentException e){
+                    types[i] = null;//this trophy type no longer exists
+                }
+            }
+            int playerCount = in.readInt();
+            for(int p=0;p<playerCount;p++){
+                UUID player = new UUID(in.readLong(), in.readLong());
+                int[] counts = new int[TrophyType.values().length];
+                for(int i=0;i<typeCount;i++){
+                    int count = in.readInt();
+                    if(types[i]!=null) counts[types[i].ordinal()] = count;
+                }
+                saved.put(player, counts);
+                tracker.load(player, counts);
+            }
+        }catch(IOException e){
+            logger.log(Level.WARNING, "Could not load pity data from "+file, e);
+        }
+    }
+
+    /**
+     * Starts the background writer thread, if it is not already running.
+     */
+    public synchronized void start(){
+        if(writer!=null) return;
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MiningTrophies-pity-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a batch of changed counts to be merged and written in the background.
+     * @param batch the changed counts, indexed by TrophyType ordinal. The arrays must not be modified afterwards.
+     */
+    public synchronized void saveAsync(Map<UUID,int[]> batch){
+        if(batch.isEmpty()) return;
+        if(writer==null){
+            write(batch);
+            return;
+        }
+        writer.execute(() -> write(batch));
+    }
+
+    /**
+     * Stops the background writer thread after finishing any queued batches.
+     */
+    public synchronized void stop(){
+        if(writer==null) return;
+        writer.shutdown();
+        try{
+            if(!writer.awaitTermination(10, TimeUnit.SECONDS)) logger.warning("Timed out waiting for pity data to be saved");
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    private void write(Map<UUID,int[]> batch){
+        for(Map.Entry<UUID,int[]> entry : batch.entrySet()){
+            if(isEmpty(entry.getValue())) saved.remove(entry.getKey());
+            else saved.put(entry.getKey(), entry.getValue());
+        }
+        TrophyType[] types = TrophyType.values();
+        File temp = new File(file.getPath()+".tmp");
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(parent!=null) parent.mkdirs();
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(types.length);
+            for(TrophyType type : types){
+                out.writeUTF(type.name());
+            }
+            out.writeInt(saved.size());
+            for(Map.Entry<UUID,int[]> entry : saved.entrySet()){
+                out.writeLong(entry.getKey().getMostSignificantBits());
+                out.writeLong(entry.getKey().getLeastSignificantBits());
+                int[] counts = entry.getValue();
+                for(int i=0;i<types.length;i++){
+                    out.writeInt(i<counts.length ? counts[i] : 0);
+                }
+            }
+        }catch(IOException e){
+            logger.log(Level.WARNING, "Could not save pity data to "+file, e);
+            return;
+        }
+        try{
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }catch(IOException e){
+            logger.log(Level.WARNING, "Could not replace pity data file "+file, e);
+        }
+    }
+
+    private static boolean isEmpty(int[] counts){
+        for(int count : counts){
+            if(count!=0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the number of attempts each player has made at each trophy type since they last received one, for bad-luck protection.
+ *
+ * Counts are kept in one int array per player, indexed by TrophyType ordinal, so recording an attempt does not allocate
+ * once a player has been seen. Players whose counts changed are remembered so that they can be saved in batches.
+ * Each player's array is guarded by its own lock, so players handled by different region threads never contend with each other.
+ * @author crash
+ */
+public final class PityTracker {
+    private final ConcurrentHashMap<UUID,int[]> attempts = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+
+    private int[] counts(UUID player){
+        int[] counts = attempts.get(player);
+        if(counts!=null) return counts;
+        return attempts.computeIfAbsent(player, id -> new int[TrophyType.values().length]);
+    }
+
+    /**
+     * Records an attempt by a player at a trophy type.
+     * @param player the UUID of the player
+     * @param type the trophy type attempted
+     * @return the number of attempts since the player last received this trophy, including this one
+     */
+    public int recordAttempt(UUID player, TrophyType type){
+        return recordAttempts(player, type, 1);
+    }
+
+    /**
+     * Records a number of attempts by a player at a trophy type.
+     * @param player the UUID of the player
+     * @param type the trophy type attempted
+     * @param amount the number of attempts
+     * @return the number of attempts since the player last received this trophy, including these ones
+     */
+    public int recordAttempts(UUID player, TrophyType type, int amount){
+        int[] counts = counts(player);
+        int index = type.ordinal();
+        synchronized(counts){
+            counts[index] = (int) Math.min(Integer.MAX_VALUE, (long) counts[index] + amount);
+            dirty.add(player);
+            return counts[index];
+        }
+    }
+
+    /**
+     * Resets the attempt count of a player after they receive a trophy.
+     * @param player the UUID of the player
+     * @param type the trophy type received
+     */
+    public void reset(UUID player, TrophyType type){
+        int[] counts = attempts.get(player);
+        if(counts==null) return;
+        synchronized(counts){
+            if(counts[type.ordinal()]==0) return;
+            counts[type.ordinal()] = 0;
+            dirty.add(player);
+        }
+    }
+
+    /**
+     * Gets the number of attempts a player has made at a trophy type since last receiving it.
+     * @param player the UUID of the player
+     * @param type the trophy type
+     * @return the number of attempts
+     */
+    public int getAttempts(UUID player, TrophyType type){
+        int[] counts = attempts.get(player);
+        if(counts==null) return 0;
+        synchronized(counts){
+            return counts[type.ordinal()];
+        }
+    }
+
+    /**
+     * Replaces the attempt counts of a player, for example when loading saved counts.
+     * The player is not marked as changed.
+     * @param player the UUID of the player
+     * @param counts the attempt counts indexed by TrophyType ordinal
+     */
+    public void load(UUID player, int[] counts){
+        int[] copy = new int[TrophyType.values().length];
+        System.arraycopy(counts, 0, copy, 0, Math.min(counts.length, copy.length));
+        attempts.put(player, copy);
+    }
+
+    /**
+     * Checks whether any counts changed since the last call to drainChanges.
+     * @return whether there are unsaved changes
+     */
+    public boolean hasChanges(){
+        return !dirty.isEmpty();
+    }
+
+    /**
+     * Takes a copy of the counts of every player that changed since the last call, and clears the changed set.
+     * @return the changed counts, indexed by TrophyType ordinal
+     */
+    public Map<UUID,int[]> drainChanges(){
+        HashMap<UUID,int[]> batch = new HashMap<>();
+        Iterator<UUID> it = dirty.iterator();
+        while(it.hasNext()){
+            UUID player = it.next();
+            it.remove();//removed before copying, so a change made during the copy marks the player again
+            int[] counts = attempts.get(player);
+            if(counts==null) continue;
+            synchronized(counts){
+                batch.put(player, counts.clone());
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Discards all counts.
+     */
+    public void clear(){
+        attempts.clear();
+        dirty.clear();
+    }
+}
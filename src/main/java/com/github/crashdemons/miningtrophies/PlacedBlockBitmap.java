@@ -0,0 +1,155 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.Arrays;
+
+/**
+ * A sparse bitmap of the player-placed blocks in one chunk.
+ *
+ * Each block of the chunk has one bit, indexed by section and local coordinates, so the 64 bits of a word cover 4 rows of 16 blocks in one layer.
+ * Only words with a bit set are stored, as parallel sorted arrays of word indexes and words,
+ * so a chunk with a handful of placed blocks costs a few dozen bytes however tall the world is.
+ * @author crash
+ */
+public final class PlacedBlockBitmap {
+    private static final int FORMAT = 1;
+    private static final int[] NO_INDEXES = new int[0];
+    private static final long[] NO_WORDS = new long[0];
+
+    private int[] indexes = NO_INDEXES;
+    private long[] words = NO_WORDS;
+    private int size = 0;
+
+    /**
+     * Gets the bit index of a block within its chunk
+     * @param x the block X coordinate (world or chunk-local)
+     * @param y the block Y coordinate
+     * @param z the block Z coordinate (world or chunk-local)
+     * @param minY the minimum height of the world
+     * @return the bit index
+     */
+    public static int index(int x, int y, int z, int minY){
+        int height = y - minY;
+        return ((height >> 4) << 12) | ((height & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private int find(int wordIndex){
+        return Arrays.binarySearch(indexes, 0, size, wordIndex);
+    }
+
+    /**
+     * Checks whether a block is marked as placed
+     * @param bit the bit index of the block
+     * @return whether the block is marked
+     */
+    public boolean get(int bit){
+        if(size==0 || bit<0) return false;
+        int position = find(bit >>> 6);
+        return position >= 0 && (words[position] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Marks a block as placed
+     * @param bit the bit index of the block
+     * @return whether the bitmap changed
+     */
+    public boolean set(int bit){
+        if(bit<0) return false;
+        int wordIndex = bit >>> 6;
+        int position = find(wordIndex);
+        if(position >= 0){
+            long old = words[position];
+            words[position] = old | (1L << bit);
+            return words[position] != old;
+        }
+        position = -position - 1;
+        if(size == indexes.length){
+            int capacity = Math.max(4, size * 2);
+            indexes = Arrays.copyOf(indexes, capacity);
+            words = Arrays.copyOf(words, capacity);
+        }
+        System.arraycopy(indexes, position, indexes, position + 1, size - position);
+        System.arraycopy(words, position, words, position + 1, size - position);
+        indexes[position] = wordIndex;
+        words[position] = 1L << bit;
+        size++;
+        return true;
+    }
+
+    /**
+     * Unmarks a block
+     * @param bit the bit index of the block
+     * @return whether the bitmap changed
+     */
+    public boolean clear(int bit){
+        if(size==0 || bit<0) return false;
+        int position = find(bit >>> 6);
+        if(position < 0 || (words[position] & (1L << bit)) == 0) return false;
+        words[position] &= ~(1L << bit);
+        if(words[position] == 0){
+            System.arraycopy(indexes, position + 1, indexes, position, size - position - 1);
+            System.arraycopy(words, position + 1, words, position, size - position - 1);
+            size--;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether no blocks are marked
+     * @return whether the bitmap is empty
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of blocks marked as placed
+     * @return the number of bits set
+     */
+    public int cardinality(){
+        int count = 0;
+        for(int i=0;i<size;i++) count += Long.bitCount(words[i]);
+        return count;
+    }
+
+    /**
+     * Packs the bitmap into an array for storage: a format number followed by pairs of word index and word.
+     * @return the packed bitmap
+     */
+    public long[] toPacked(){
+        long[] packed = new long[1 + size * 2];
+        packed[0] = FORMAT;
+        for(int i=0;i<size;i++){
+            packed[1 + i * 2] = indexes[i];
+            packed[2 + i * 2] = words[i];
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks a bitmap stored by {@link #toPacked()}
+     * @param packed the packed bitmap
+     * @return the bitmap, which is empty if the packed data is not understood
+     */
+    public static PlacedBlockBitmap fromPacked(long[] packed){
+        PlacedBlockBitmap bitmap = new PlacedBlockBitmap();
+        if(packed == null || packed.length < 1 || packed[0] != FORMAT) return bitmap;
+        int pairs = (packed.length - 1) / 2;
+        bitmap.indexes = new int[pairs];
+        bitmap.words = new long[pairs];
+        for(int i=0;i<pairs;i++){
+            long wordIndex = packed[1 + i * 2];
+            long word = packed[2 + i * 2];
+            if(word == 0 || wordIndex < 0 || wordIndex > Integer.MAX_VALUE) continue;
+            if(bitmap.size > 0 && wordIndex <= bitmap.indexes[bitmap.size - 1]) continue;//must be strictly ascending
+            bitmap.indexes[bitmap.size] = (int) wordIndex;
+            bitmap.words[bitmap.size] = word;
+            bitmap.size++;
+        }
+        return bitmap;
+    }
+}
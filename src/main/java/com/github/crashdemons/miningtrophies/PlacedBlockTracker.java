@@ -0,0 +1,220 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import com.github.crashdemons.miningtrophies.events.SimulatedBlockBreakEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+/**
+ * Tracks trophy blocks placed by players, so that placing ore and mining it again does not roll for trophies.
+ *
+ * Placed blocks are kept in a {@link PlacedBlockBitmap} per chunk, which is written to the chunk's persistent data whenever it changes
+ * and read back when the chunk is loaded. Only chunks where trophy blocks were placed are kept in memory, and checking a block is a map lookup and a bit test.
+ * Blocks that are broken, exploded or replaced are unmarked, and blocks moved by pistons stay marked at their new position.
+ * Only registered while the trackplacedblocks setting is enabled.
+ *
+ * The maps of tracked chunks are concurrent, and each chunk's bitmap is only read and changed by events of that chunk,
+ * which a region-threaded server always runs on the thread that owns the chunk - so no locks are needed.
+ * @author crash
+ */
+public final class PlacedBlockTracker implements Listener {
+    private static final NamespacedKey PLACED_TAG = NamespacedKey.fromString("miningtrophies:placed");
+
+    private final ConcurrentHashMap<UUID,ConcurrentHashMap<Long,TrackedChunk>> worlds = new ConcurrentHashMap<>();
+
+    private static final class TrackedChunk {
+        final UUID world;
+        final long key;
+        final int minY;
+        final PlacedBlockBitmap bitmap;
+        boolean changed = false;//since the chunk was loaded
+
+        TrackedChunk(UUID world, long key, int minY, PlacedBlockBitmap bitmap){
+            this.world = world;
+            this.key = key;
+            this.minY = minY;
+            this.bitmap = bitmap;
+        }
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ){
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private TrackedChunk getTracked(World world, int chunkX, int chunkZ){
+        if(worlds.isEmpty()) return null;
+        ConcurrentHashMap<Long,TrackedChunk> chunks = worlds.get(world.getUID());
+        if(chunks==null) return null;
+        return chunks.get(chunkKey(chunkX, chunkZ));
+    }
+
+    private TrackedChunk getOrCreateTracked(Block block){
+        int x = block.getX();
+        int z = block.getZ();
+        TrackedChunk tracked = getTracked(block.getWorld(), x >> 4, z >> 4);
+        if(tracked!=null) return tracked;
+        Chunk chunk = block.getChunk();
+        tracked = read(chunk);//the chunk may have been loaded before tracking was enabled
+        if(tracked==null) tracked = new TrackedChunk(chunk.getWorld().getUID(), chunkKey(chunk.getX(), chunk.getZ()), chunk.getWorld().getMinHeight(), new PlacedBlockBitmap());
+        worlds.computeIfAbsent(tracked.world, id -> new ConcurrentHashMap<>()).put(tracked.key, tracked);
+        return tracked;
+    }
+
+    /**
+     * Checks whether a block was placed by a player
+     * @param block the block to check
+     * @return whether the block is marked as placed
+     */
+    public boolean isPlaced(Block block){
+        if(worlds.isEmpty()) return false;
+        int x = block.getX();
+        int z = block.getZ();
+        TrackedChunk tracked = getTracked(block.getWorld(), x >> 4, z >> 4);
+        return tracked!=null && tracked.bitmap.get(PlacedBlockBitmap.index(x, block.getY(), z, tracked.minY));
+    }
+
+    private void mark(Block block){
+        TrackedChunk tracked = getOrCreateTracked(block);
+        if(tracked.bitmap.set(PlacedBlockBitmap.index(block.getX(), block.getY(), block.getZ(), tracked.minY))) write(tracked, block.getChunk());
+    }
+
+    private void unmark(Block block){
+        if(worlds.isEmpty()) return;
+        int x = block.getX();
+        int z = block.getZ();
+        TrackedChunk tracked = getTracked(block.getWorld(), x >> 4, z >> 4);
+        if(tracked!=null && tracked.bitmap.clear(PlacedBlockBitmap.index(x, block.getY(), z, tracked.minY))) write(tracked, block.getChunk());
+    }
+
+    /**
+     * Gets the number of chunks with placed blocks that are kept in memory
+     * @return the number of chunks tracked
+     */
+    public int getTrackedChunkCount(){
+        int count = 0;
+        for(ConcurrentHashMap<Long,TrackedChunk> chunks : worlds.values()) count += chunks.size();
+        return count;
+    }
+
+    /**
+     * Reads the placed blocks of every loaded chunk. Called when tracking is enabled on a server with a single main thread;
+     * on a region-threaded server, chunks that are already loaded are read when a block is next placed in them or when they are loaded again.
+     * @param loadedWorlds the worlds to read
+     */
+    public void loadAll(List<World> loadedWorlds){
+        for(World world : loadedWorlds){
+            for(Chunk chunk : world.getLoadedChunks()) load(chunk);
+        }
+    }
+
+    /**
+     * Forgets every tracked chunk. Called when tracking is disabled or the plugin is disabled; the placed blocks are already stored in the chunks.
+     */
+    public void clear(){
+        worlds.clear();
+    }
+
+    private static TrackedChunk read(Chunk chunk){
+        long[] packed = chunk.getPersistentDataContainer().get(PLACED_TAG, PersistentDataType.LONG_ARRAY);
+        if(packed==null) return null;
+        PlacedBlockBitmap bitmap = PlacedBlockBitmap.fromPacked(packed);
+        if(bitmap.isEmpty()) return null;
+        World world = chunk.getWorld();
+        return new TrackedChunk(world.getUID(), chunkKey(chunk.getX(), chunk.getZ()), world.getMinHeight(), bitmap);
+    }
+
+    private void load(Chunk chunk){
+        TrackedChunk tracked = read(chunk);
+        if(tracked==null) return;
+        worlds.computeIfAbsent(tracked.world, id -> new ConcurrentHashMap<>()).put(tracked.key, tracked);
+    }
+
+    private static void write(TrackedChunk tracked, Chunk chunk){//placements are rare enough to store every change immediately, on the thread that owns the chunk
+        PersistentDataContainer data = chunk.getPersistentDataContainer();
+        if(tracked.bitmap.isEmpty()) data.remove(PLACED_TAG);
+        else data.set(PLACED_TAG, PersistentDataType.LONG_ARRAY, tracked.bitmap.toPacked());
+        tracked.changed = true;
+    }
+
+    @EventHandler(ignoreCancelled=true,priority=EventPriority.MONITOR)
+    public void onBlockPlace(BlockPlaceEvent event){
+        Block block = event.getBlockPlaced();
+        if(TrophyRegistry.getCurrent().get(block.getType())!=null) mark(block);
+        else unmark(block);//a trophy block that was replaced
+    }
+
+    @EventHandler(ignoreCancelled=true,priority=EventPriority.MONITOR)
+    public void onBlockBreak(BlockBreakEvent event){
+        if(event instanceof SimulatedBlockBreakEvent) return;
+        unmark(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled=true,priority=EventPriority.MONITOR)
+    public void onPistonExtend(BlockPistonExtendEvent event){
+        moveBlocks(event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(ignoreCancelled=true,priority=EventPriority.MONITOR)
+    public void onPistonRetract(BlockPistonRetractEvent event){
+        moveBlocks(event.getBlocks(), event.getDirection());
+    }
+
+    private void moveBlocks(List<Block> blocks, BlockFace direction){
+        if(worlds.isEmpty()) return;
+        ArrayList<Block> moved = new ArrayList<>();
+        for(Block block : blocks){
+            if(isPlaced(block)) moved.add(block);
+        }
+        for(Block block : moved) unmark(block);//all old positions first, since blocks move into each other's positions
+        for(Block block : moved) mark(block.getRelative(direction));
+    }
+
+    @EventHandler(ignoreCancelled=true,priority=EventPriority.MONITOR)
+    public void onBlockExplode(BlockExplodeEvent event){
+        for(Block block : event.blockList()) unmark(block);
+    }
+
+    @EventHandler(ignoreCancelled=true,priority=EventPriority.MONITOR)
+    public void onEntityExplode(EntityExplodeEvent event){
+        for(Block block : event.blockList()) unmark(block);
+    }
+
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event){
+        if(event.isNewChunk()) return;//generated chunks have no placed blocks
+        load(event.getChunk());
+    }
+
+    @EventHandler(priority=EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event){
+        Chunk chunk = event.getChunk();
+        ConcurrentHashMap<Long,TrackedChunk> chunks = worlds.get(chunk.getWorld().getUID());
+        if(chunks==null) return;
+        TrackedChunk tracked = chunks.remove(chunkKey(chunk.getX(), chunk.getZ()));
+        if(tracked!=null && tracked.changed) event.setSaveChunk(true);
+    }
+}
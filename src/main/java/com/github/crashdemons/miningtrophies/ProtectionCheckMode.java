@@ -0,0 +1,39 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+/**
+ * How protection and anti-cheat plugins are given the chance to veto a trophy drop
+ * @author crash
+ */
+public enum ProtectionCheckMode {
+    /**
+     * Fire a PlayerAnimationEvent, BlockDamageEvent and SimulatedBlockBreakEvent for every trophy, as a real block break would.
+     */
+    FULL,
+    /**
+     * Fire only the SimulatedBlockBreakEvent for every trophy.
+     */
+    BREAK_ONLY,
+    /**
+     * Run the full simulation once per player and chunk, and reuse the verdict for a configurable time.
+     */
+    CACHED;
+
+    /**
+     * Parses a mode from its configuration name
+     * @param name the name, such as "full", "breakonly" or "cached"
+     * @return the mode, or FULL if the name is not recognized
+     */
+    public static ProtectionCheckMode fromConfigName(String name){
+        if(name==null) return FULL;
+        String normalized = name.replace("_","").replace("-","").toUpperCase();
+        for(ProtectionCheckMode mode : values()){
+            if(mode.name().replace("_","").equals(normalized)) return mode;
+        }
+        return FULL;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import com.github.crashdemons.miningtrophies.events.SimulatedBlockBreakEvent;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.BlockDamageEvent;
+import org.bukkit.event.player.PlayerAnimationEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+/**
+ * Gives protection and anti-cheat plugins the chance to veto a trophy drop by simulating a block break.
+ *
+ * Depending on the configured {@link ProtectionCheckMode}, the simulation fires every event a real break would, only the break event,
+ * or is run once per player and chunk with the verdict reused for a short time. Events that no plugin listens to are not fired at all.
+ * Counts of checks, simulations, vetoes and cache hits are kept so server owners can see how often the simulation actually cancels.
+ * @author crash
+ */
+public final class ProtectionChecker {
+    private static final int MAX_CACHED_VERDICTS = 4096;
+
+    private final Plugin plugin;
+    private volatile ProtectionCheckMode mode = ProtectionCheckMode.FULL;
+    private volatile long ttlNanos = 0;
+    private final ConcurrentHashMap<VerdictKey,Verdict> verdicts = new ConcurrentHashMap<>();
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder simulations = new LongAdder();
+    private final LongAdder simulationsCancelled = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+
+    private static final class VerdictKey {
+        final UUID player;
+        final UUID world;
+        final int chunkX;
+        final int chunkZ;
+
+        VerdictKey(UUID player, UUID world, int chunkX, int chunkZ){
+            this.player = player;
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this==o) return true;
+            if(!(o instanceof VerdictKey)) return false;
+            VerdictKey other = (VerdictKey) o;
+            return chunkX==other.chunkX && chunkZ==other.chunkZ && player.equals(other.player) && Objects.equals(world, other.world);
+        }
+
+        @Override
+        public int hashCode(){
+            return ((player.hashCode() * 31 + Objects.hashCode(world)) * 31 + chunkX) * 31 + chunkZ;
+        }
+    }
+
+    private static final class Verdict {
+        final boolean allowed;
+        final long expires;
+
+        Verdict(boolean allowed, long expires){
+            this.allowed = allowed;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Constructs the checker
+     * @param plugin the plugin firing the simulated events
+     */
+    public ProtectionChecker(Plugin plugin){
+        this.plugin = plugin;
+    }
+
+    /**
+     * Applies the protection check settings and discards cached verdicts.
+     * @param settings the current settings
+     */
+    public void configure(TrophySettings settings){
+        mode = settings.getProtectionCheckMode();
+        ttlNanos = Math.max(0, settings.getProtectionCacheTime()) * 1_000_000_000L;
+        verdicts.clear();
+    }
+
+    /**
+     * Gets the configured protection check mode
+     * @return the mode
+     */
+    public ProtectionCheckMode getMode(){
+        return mode;
+    }
+
+    /**
+     * Checks whether a player may receive a trophy from a block, according to protection and anti-cheat plugins.
+     * @param player the player breaking the block
+     * @param block the block being broken
+     * @return true if no plugin vetoed the simulated break
+     */
+    public boolean check(Player player, Block block){
+        checks.increment();
+        ProtectionCheckMode current = mode;
+        if(current!=ProtectionCheckMode.CACHED || ttlNanos==0) return simulate(player, block, current!=ProtectionCheckMode.BREAK_ONLY);
+        long now = System.nanoTime();
+        World world = block.getWorld();
+        VerdictKey key = new VerdictKey(player.getUniqueId(), world==null ? null : world.getUID(), block.getX() >> 4, block.getZ() >> 4);
+        Verdict verdict = verdicts.get(key);
+        if(verdict!=null && now - verdict.expires < 0){
+            cacheHits.increment();
+            return verdict.allowed;
+        }
+        boolean allowed = simulate(player, block, true);
+        if(verdicts.size()>=MAX_CACHED_VERDICTS) prune(now);
+        verdicts.put(key, new Verdict(allowed, now + ttlNanos));
+        return allowed;
+    }
+
+    private void prune(long now){
+        Iterator<Verdict> it = verdicts.values().iterator();
+        while(it.hasNext()){
+            if(now - it.next().expires >= 0) it.remove();
+        }
+        if(verdicts.size()>=MAX_CACHED_VERDICTS) verdicts.clear();
+    }
+
+    private boolean simulate(Player player, Block block, boolean full){
+        simulations.increment();
+        PluginManager pm = plugin.getServer().getPluginManager();
+        boolean wasExemptFromNCP = true;
+        /*if (NCPEnabled) {
+            wasExemptFromNCP = NCPExemptionManager.isExempted(player, CheckType.BLOCKBREAK_FASTBREAK);
+            //getLogger().info("NCP Exemption: "+wasExemptFromNCP);
+            if (!wasExemptFromNCP){
+                //getLogger().info("NCP Exemption added");
+                NCPExemptionManager.exemptPermanently(player, CheckType.BLOCKBREAK_FASTBREAK);
+            }
+        }*/
+        if(full){//the events are only needed if another plugin can see them.
+            if(PlayerAnimationEvent.getHandlerList().getRegisteredListeners().length > 0) pm.callEvent(new PlayerAnimationEvent(player));
+            if(BlockDamageEvent.getHandlerList().getRegisteredListeners().length > 0) pm.callEvent(new BlockDamageEvent(player, block, player.getEquipment().getItemInMainHand(), true));
+        }
+        SimulatedBlockBreakEvent simulatedbreak = new SimulatedBlockBreakEvent(block, player);
+        pm.callEvent(simulatedbreak);
+        /*if (NCPEnabled && !wasExemptFromNCP){
+            NCPExemptionManager.unexempt(player, CheckType.BLOCKBREAK_FASTBREAK);
+            //getLogger().info("NCP Exemption removed");
+        }*/
+        if(simulatedbreak.isCancelled()){
+            simulationsCancelled.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of protection checks made
+     * @return the number of checks
+     */
+    public long getChecks(){ return checks.sum(); }
+
+    /**
+     * Gets the number of block breaks simulated
+     * @return the number of simulations
+     */
+    public long getSimulations(){ return simulations.sum(); }
+
+    /**
+     * Gets the number of simulated block breaks that were cancelled by another plugin
+     * @return the number of vetoes
+     */
+    public long getSimulationsCancelled(){ return simulationsCancelled.sum(); }
+
+    /**
+     * Gets the number of checks answered from a cached verdict
+     * @return the number of cache hits
+     */
+    public long getCacheHits(){ return cacheHits.sum(); }
+}
@@ -0,0 +1,45 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+/**
+ * A source of random values for trophy drop rolls.
+ *
+ * The plugin uses a {@link ThreadLocalRollSource} by default; a {@link SeededRollSource} can be used to make rolls reproducible.
+ * Sources used on a region-threaded server are called from many threads at once and must be thread-safe.
+ * @author crash
+ */
+public interface RollSource {
+    /**
+     * Gets the next random droproll value.
+     * @return a value uniformly distributed in the range [0,1)
+     */
+    double nextRoll();
+    
+    /**
+     * Gets the number of successes in a number of independent rolls with the same droprate, as if nextRoll()&lt;droprate were checked for each roll.
+     * 
+     * The result is sampled from the binomial distribution by skipping over failed rolls geometrically,
+     * so this only uses about (rolls*min(droprate,1-droprate))+1 random values instead of one per roll.
+     * @param rolls the number of rolls
+     * @param droprate the chance of each roll succeeding as a fraction (0.01 = 1%)
+     * @return the number of successful rolls, between 0 and rolls
+     */
+    default int nextBinomial(int rolls, double droprate){
+        if(rolls<=0 || !(droprate>0.0)) return 0;
+        if(droprate>=1.0) return rolls;
+        if(droprate>0.5) return rolls - nextBinomial(rolls, 1.0-droprate);
+        double logFailure = Math.log1p(-droprate);
+        int successes = 0;
+        long position = 0;
+        while(true){
+            double skip = Math.floor(Math.log1p(-nextRoll()) / logFailure);//the number of failed rolls before the next success
+            if(skip >= rolls - position) return successes;//compared as a double, because tiny droprates give skips too large for a long
+            position += (long) skip + 1;
+            successes++;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.SplittableRandom;
+
+/**
+ * A deterministic roll source that produces the same sequence of rolls for the same seed.
+ *
+ * This is intended for tests, benchmarks and replaying a sequence of rolls. It is not thread-safe -
+ * use {@link #split()} to create an independent source for each thread.
+ * @author crash
+ */
+public final class SeededRollSource implements RollSource {
+    private final SplittableRandom random;
+
+    /**
+     * Constructs a roll source with the given seed
+     * @param seed the seed of the sequence of rolls
+     */
+    public SeededRollSource(long seed){
+        this(new SplittableRandom(seed));
+    }
+
+    private SeededRollSource(SplittableRandom random){
+        this.random = random;
+    }
+
+    /**
+     * Creates a new roll source with a sequence that is independent of this one.
+     * The new source is itself deterministic given the seed of this source and the number of rolls/splits made before it.
+     * @return the new roll source
+     */
+    public SeededRollSource split(){
+        return new SeededRollSource(random.split());
+    }
+
+    @Override
+    public double nextRoll(){
+        return random.nextDouble();
+    }
+}
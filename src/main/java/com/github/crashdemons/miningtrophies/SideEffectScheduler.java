@@ -0,0 +1,137 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Defers the side effects of winning a trophy (announcements, statistics and leaderboard updates) out of the block break that won it.
+ *
+ * Effects can be submitted from any thread into a lock-free queue, and a task on the main thread (the global region thread on Folia) runs them in order,
+ * each tick, until the tick budget is used up. Effects left over run on the following ticks, so a burst of trophies is spread out instead of lengthening one tick.
+ * At least one effect runs each tick, so the queue always makes progress even if a single effect takes longer than the budget.
+ * Effects must not touch entities or blocks directly, because on Folia they do not run on the thread that owns them.
+ * @author crash
+ */
+public final class SideEffectScheduler {
+    private final Logger logger;
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private volatile long budgetNanos = 0;
+    private volatile TaskScheduler.Task drainTask = null;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder ticksOverBudget = new LongAdder();
+
+    /**
+     * Constructs the side-effect scheduler
+     * @param logger the logger that failed effects are reported to
+     */
+    public SideEffectScheduler(Logger logger){
+        this.logger = logger;
+    }
+
+    /**
+     * Starts (or restarts) the task that runs queued effects.
+     * @param scheduler the scheduler to run the drain task with
+     * @param budgetNanos the time in nanoseconds that queued effects may take each tick, or 0 to run effects as soon as they are submitted
+     */
+    public synchronized void start(TaskScheduler scheduler, long budgetNanos){
+        stop();
+        this.budgetNanos = budgetNanos;
+        if(budgetNanos>0) drainTask = scheduler.runTimer(this::drainTick, 1, 1);
+    }
+
+    /**
+     * Stops the drain task and runs every queued effect.
+     */
+    public synchronized void stop(){
+        if(drainTask!=null){
+            drainTask.cancel();
+            drainTask = null;
+        }
+        drainAll();
+    }
+
+    /**
+     * Queues an effect to run on a later tick, or runs it now if effects are not deferred.
+     * @param effect the effect
+     */
+    public void submit(Runnable effect){
+        submitted.increment();
+        if(drainTask==null){
+            run(effect);
+            return;
+        }
+        queue.offer(effect);
+    }
+
+    /**
+     * Runs queued effects until the tick budget is used up.
+     */
+    void drainTick(){
+        long start = System.nanoTime();
+        long budget = budgetNanos;
+        Runnable effect = queue.poll();
+        while(effect!=null){
+            run(effect);
+            if(System.nanoTime() - start >= budget) break;
+            effect = queue.poll();
+        }
+        if(!queue.isEmpty()) ticksOverBudget.increment();
+    }
+
+    /**
+     * Runs every queued effect, regardless of the budget.
+     */
+    public void drainAll(){
+        Runnable effect;
+        while((effect = queue.poll())!=null) run(effect);
+    }
+
+    private void run(Runnable effect){
+        try{
+            effect.run();
+        }catch(RuntimeException e){
+            failed.increment();
+            logger.log(Level.WARNING, "A deferred trophy side effect failed", e);
+        }
+        executed.increment();
+    }
+
+    /**
+     * Gets the number of effects submitted
+     * @return the number of effects submitted
+     */
+    public long getSubmitted(){ return submitted.sum(); }
+
+    /**
+     * Gets the number of effects that have been run, including failed ones
+     * @return the number of effects run
+     */
+    public long getExecuted(){ return executed.sum(); }
+
+    /**
+     * Gets the number of effects that threw an exception
+     * @return the number of effects failed
+     */
+    public long getFailed(){ return failed.sum(); }
+
+    /**
+     * Gets the number of ticks that ended with effects still queued, because the budget was used up
+     * @return the number of ticks over budget
+     */
+    public long getTicksOverBudget(){ return ticksOverBudget.sum(); }
+
+    /**
+     * Gets the number of effects waiting to run
+     * @return the number of pending effects
+     */
+    public long getPending(){ return Math.max(0, getSubmitted() - getExecuted()); }
+}
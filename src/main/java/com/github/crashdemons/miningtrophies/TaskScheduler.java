@@ -0,0 +1,78 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Schedules the plugin's tasks on the right threads for the server.
+ *
+ * On a Bukkit server every task runs on the main thread (or the async pool). On a region-threaded (Folia) server,
+ * global tasks run on the global region thread, and work touching a location or entity runs on the thread that owns it.
+ * @author crash
+ */
+public interface TaskScheduler {
+    /**
+     * A scheduled repeating task
+     */
+    interface Task {
+        /**
+         * Stops the task from running again
+         */
+        void cancel();
+    }
+
+    /**
+     * Creates the scheduler suited to the server the plugin is running on
+     * @param plugin the plugin that owns the tasks
+     * @return a region-threaded scheduler on Folia, or a Bukkit scheduler otherwise
+     */
+    static TaskScheduler create(Plugin plugin){
+        if(FoliaTaskScheduler.isSupported()) return new FoliaTaskScheduler(plugin);
+        return new BukkitTaskScheduler(plugin);
+    }
+
+    /**
+     * Checks whether the server runs regions on separate threads
+     * @return true on Folia
+     */
+    boolean isRegionThreaded();
+
+    /**
+     * Runs a task repeatedly on the main thread, or the global region thread on Folia
+     * @param task the task
+     * @param delayTicks the ticks before the first run
+     * @param periodTicks the ticks between runs
+     * @return the scheduled task
+     */
+    Task runTimer(Runnable task, long delayTicks, long periodTicks);
+
+    /**
+     * Runs a task repeatedly off the server threads
+     * @param task the task
+     * @param delayTicks the ticks before the first run
+     * @param periodTicks the ticks between runs
+     * @return the scheduled task
+     */
+    Task runAsyncTimer(Runnable task, long delayTicks, long periodTicks);
+
+    /**
+     * Runs a task on the thread that owns a location: immediately if that is the current thread, otherwise as soon as possible.
+     * @param location the location the task works on
+     * @param task the task
+     */
+    void runAt(Location location, Runnable task);
+
+    /**
+     * Runs a task on the thread that owns an entity: immediately if that is the current thread, otherwise as soon as possible.
+     * The task is not run if the entity is removed first.
+     * @param entity the entity the task works on
+     * @param task the task
+     */
+    void runFor(Entity entity, Runnable task);
+}
@@ -0,0 +1,28 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The default roll source, backed by the generator of the calling thread.
+ *
+ * This source can be shared by any number of threads without contention, but cannot be seeded.
+ * @author crash
+ */
+public final class ThreadLocalRollSource implements RollSource {
+    /**
+     * The shared instance of this roll source
+     */
+    public static final ThreadLocalRollSource INSTANCE = new ThreadLocalRollSource();
+
+    private ThreadLocalRollSource(){}
+
+    @Override
+    public double nextRoll(){
+        return ThreadLocalRandom.current().nextDouble();
+    }
+}
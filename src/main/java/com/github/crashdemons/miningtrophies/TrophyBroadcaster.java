@@ -0,0 +1,198 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Sends trophy announcements to nearby players (or the whole server), with rate limiting.
+ *
+ * Announcements are limited per finding player and globally within a fixed time window.
+ * Announcements over either limit are not sent individually, but are summarized in a single line per player at the end of the window.
+ * Announcements may be made from several region threads at once: the global limit is a single atomic counter and each finder's state is only locked by its own announcements.
+ * On a region-threaded server, nearby players are found on the thread that owns the announced location,
+ * unless the range reaches further than that thread is sure to own, in which case each online player is checked on its own thread.
+ * @author crash
+ */
+public final class TrophyBroadcaster {
+    private static final Predicate<Entity> IS_PLAYER = entity -> entity instanceof Player;
+
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int REGION_OWNED_RANGE = 128;//Folia keeps the 8 chunks around a region's active chunks in that region, so players this close to a location are owned by its thread
+
+    private final Plugin plugin;
+    private final ConcurrentHashMap<UUID,FinderState> finders = new ConcurrentHashMap<>();
+    private final AtomicLong global = new AtomicLong(-1);//the current window and the count of announcements in it, packed together
+    private volatile TaskScheduler scheduler = null;
+    private TaskScheduler.Task summaryTask = null;
+
+    private static final class FinderState {
+        long window = -1;
+        int count = 0;
+        int suppressed = 0;
+        boolean removed = false;//set when the state is removed from the map, so that announcements holding it look up a new one
+        String displayName;
+        Location location;
+    }
+
+    /**
+     * Constructs the broadcaster
+     * @param plugin the plugin that owns the summary task
+     */
+    public TrophyBroadcaster(Plugin plugin){
+        this.plugin = plugin;
+    }
+
+    /**
+     * Starts (or restarts) the task that sends summaries of rate-limited announcements.
+     * @param settings the current settings
+     * @param scheduler the scheduler to run the summary task and deliver messages with
+     */
+    public void start(TrophySettings settings, TaskScheduler scheduler){
+        stop();
+        this.scheduler = scheduler;
+        long period = Math.max(1, settings.getBroadcastWindow()) * 20L;
+        summaryTask = scheduler.runTimer(() -> sendSummaries(settings), period, period);
+    }
+
+    /**
+     * Stops the summary task and discards any pending summaries.
+     */
+    public void stop(){
+        if(summaryTask!=null){
+            summaryTask.cancel();
+            summaryTask = null;
+        }
+        finders.clear();
+        global.set(-1);
+    }
+
+    private static long currentWindow(TrophySettings settings){
+        long windowMillis = Math.max(1, settings.getBroadcastWindow()) * 1000L;
+        return System.currentTimeMillis() / windowMillis;
+    }
+
+    /**
+     * Announces that a player found a trophy, if the rate limits allow it.
+     * @param finder the player that found the trophy
+     * @param type the type of trophy found
+     * @param settings the current settings
+     */
+    public void announce(Player finder, TrophyType type, TrophySettings settings){
+        announce(finder.getUniqueId(), finder.getDisplayName(), finder.getLocation(), type.getDefinition(), settings);
+    }
+
+    /**
+     * Announces that a player found a trophy, if the rate limits allow it.
+     * The player's details are passed in, so that announcements can be made later or from a thread that does not own the player.
+     * @param finder the UUID of the player that found the trophy
+     * @param displayName the display name of the player
+     * @param location where the player found the trophy
+     * @param trophy the trophy found
+     * @param settings the current settings
+     */
+    public void announce(UUID finder, String displayName, Location location, TrophyDefinition trophy, TrophySettings settings){
+        long window = currentWindow(settings);
+        int playerLimit = settings.getBroadcastPlayerLimit();
+        while(true){
+            FinderState state = finders.computeIfAbsent(finder, id -> new FinderState());
+            synchronized(state){
+                if(state.removed) continue;//sendSummaries removed it after it was looked up, so a count recorded here would be lost
+                if(state.window!=window){
+                    state.window = window;
+                    state.count = 0;
+                }
+                state.displayName = displayName;
+                state.location = location;
+                if((playerLimit>0 && state.count>=playerLimit) || !tryCountGlobal(window, settings.getBroadcastGlobalLimit())){
+                    state.suppressed++;
+                    return;
+                }
+                state.count++;
+            }
+            break;
+        }
+        send(location, displayName+" found a "+trophy.getDropName()+".", settings);
+    }
+
+    private boolean tryCountGlobal(long window, int globalLimit){
+        while(true){
+            long current = global.get();
+            long count = (current>>>COUNT_BITS)==window ? current & COUNT_MASK : 0;
+            if(globalLimit>0 && count>=globalLimit) return false;
+            if(count>=COUNT_MASK) count = COUNT_MASK - 1;//only the limit matters, so the count can saturate
+            if(global.compareAndSet(current, (window<<COUNT_BITS) | (count+1))) return true;
+        }
+    }
+
+    private void sendSummaries(TrophySettings settings){
+        long window = currentWindow(settings);
+        for(Map.Entry<UUID,FinderState> entry : finders.entrySet()){
+            FinderState state = entry.getValue();
+            String summary = null;
+            Location location;
+            synchronized(state){
+                location = state.location;
+                if(state.suppressed>0){
+                    String trophies = state.suppressed==1 ? "trophy" : "trophies";
+                    summary = state.displayName+" found "+state.suppressed+" more "+trophies+".";
+                    state.suppressed = 0;
+                }else if(state.window!=window){
+                    finders.remove(entry.getKey(), state);
+                    state.removed = true;
+                }
+            }
+            if(summary!=null) send(location, summary, settings);
+        }
+    }
+
+    private void send(Location location, String message, TrophySettings settings){
+        int broadcastRange = settings.getBroadcastRange();
+        if(broadcastRange <= 0){
+            plugin.getServer().broadcastMessage(message);
+            return;
+        }
+        World world = location.getWorld();
+        if(world==null) return;
+        double rangeSquared = (double) broadcastRange * broadcastRange;
+        TaskScheduler current = scheduler;
+        if(current!=null && current.isRegionThreaded()){
+            //entities of other regions can't be queried from this thread
+            if(broadcastRange <= REGION_OWNED_RANGE){
+                current.runAt(location, () -> sendNearby(world, location, broadcastRange, message));
+                return;
+            }
+            //the range may cover other regions, so each recipient checks its own distance on its own thread
+            for(Player player : plugin.getServer().getOnlinePlayers()){
+                current.runFor(player, () -> {
+                    Location playerLocation = player.getLocation();
+                    if(world.equals(playerLocation.getWorld()) && location.distanceSquared(playerLocation) <= rangeSquared) player.sendMessage(message);
+                });
+            }
+            return;
+        }
+        sendNearby(world, location, broadcastRange, message);
+    }
+
+    private static void sendNearby(World world, Location location, int broadcastRange, String message){
+        double rangeSquared = (double) broadcastRange * broadcastRange;
+        for(Entity entity : world.getNearbyEntities(location, broadcastRange, broadcastRange, broadcastRange, IS_PLAYER)){
+            if(location.distanceSquared(entity.getLocation()) <= rangeSquared){
+                entity.sendMessage(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.bukkit.ChatColor;
+import org.bukkit.Color;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Registry;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemFlag;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.inventory.meta.PotionMeta;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+
+/**
+ * An immutable definition of a trophy: the blocks that drop it, its droprate, and everything needed to create the trophy item.
+ *
+ * Definitions are created by a {@link TrophyRegistry}, which numbers them with dense ids in the order they are configured.
+ * Trophies that existed before trophies were configurable also have a {@link TrophyType}, which statistics and bad-luck protection are kept for.
+ * @author crash
+ */
+public final class TrophyDefinition {
+    private static final int TPS=20;
+
+    private final int id;
+    private final String name;
+    private final TrophyType type;
+    private final String dropName;
+    private final Material dropMaterial;
+    private final String dropLore;
+    private final String dropEnchantment;//resolved on use, so that definitions can be created without a server registry
+    private final double dropRate;
+    private final List<Material> blockMaterials;
+    private final String identifyingLore;
+
+    TrophyDefinition(int id, String name, String dropName, Material dropMaterial, String dropLore, String dropEnchantment, double dropRate, List<Material> blockMaterials){
+        this.id = id;
+        this.name = name.toLowerCase();
+        this.type = findType(this.name);
+        this.dropName = dropName;
+        this.dropMaterial = dropMaterial;
+        this.dropLore = dropLore==null ? "" : dropLore;
+        this.dropEnchantment = dropEnchantment;
+        this.dropRate = dropRate;
+        this.blockMaterials = Collections.unmodifiableList(new ArrayList<>(blockMaterials));
+        this.identifyingLore = ChatColor.RESET+""+ChatColor.DARK_PURPLE+getBlockName()+" "+ChatColor.BLUE+""+ChatColor.ITALIC+"Mining Trophy";
+    }
+
+    static TrophyType findType(String name){
+        for(TrophyType type : TrophyType.values()){
+            if(type.name().equalsIgnoreCase(name)) return type;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the dense id of this trophy in its registry
+     * @return the id, from 0 to the size of the registry
+     */
+    public int getId(){
+        return id;
+    }
+
+    /**
+     * Gets the configured name of this trophy, such as diamond_ore
+     * @return the lowercase name
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Gets the trophy type with the same name as this trophy
+     * @return the trophy type, or null if the trophy is only defined in the configuration
+     */
+    public TrophyType getType(){
+        return type;
+    }
+
+    public String getDropName(){
+        return dropName;
+    }
+
+    /**
+     * Get the material of the trophy item that is dropped
+     * @return the item material
+     */
+    public Material getDropMaterial(){
+        return dropMaterial;
+    }
+
+    /**
+     * Get the enchantment applied to the trophy item (when enchantments are enabled)
+     * @return the enchantment, or null if it is not a known enchantment
+     */
+    public Enchantment getDropEnchantment(){
+        NamespacedKey key = NamespacedKey.fromString(dropEnchantment.toLowerCase());
+        return key==null ? null : Registry.ENCHANTMENT.get(key);
+    }
+
+    /**
+     * Gets the configured droprate of this trophy
+     * @return the droprate as a fraction (0.01 = 1%)
+     */
+    public double getDropRate(){
+        return dropRate;
+    }
+
+    /**
+     * Gets the materials of the blocks that drop this trophy
+     * @return the block materials
+     */
+    public List<Material> getBlockMaterials(){
+        return blockMaterials;
+    }
+
+    /**
+     * Get the human-readable name of the blocks that drop this trophy
+     * @return the block name
+     */
+    public String getBlockName(){
+        return camelCase(name.replace("_", " "));
+    }
+
+    /**
+     * Gets the value of the trophy tag that marks items of this trophy.
+     * This is the uppercase name, the same as the name of the {@link TrophyType} for trophies that have one.
+     * @return the tag value
+     */
+    public String getTag(){
+        return name.toUpperCase();
+    }
+
+    /**
+     * get the config entry key that the droprate of this trophy is read from, when it is not set in its trophies entry
+     * @return the config key name
+     */
+    public String getDropConfigName(){
+        return name.replace("_", "")+"droprate";
+    }
+
+    public String getIdentifyingLore(){
+        return identifyingLore;
+    }
+
+    public List<String> getLore(){
+        ArrayList<String> lore = new ArrayList<>();
+        if(!dropLore.isEmpty()) lore.add(ChatColor.RESET+""+ChatColor.DARK_PURPLE+ChatColor.ITALIC+dropLore);
+        lore.add(identifyingLore);
+        return lore;
+    }
+
+    /**
+     * Creates a new itemstack of this trophy
+     * @param addenchants controls whether to add default enchantments to the trophy item
+     * @param addeffects controls whether to add default potion effects to the trophy item
+     * @param addlore controls whether to add lore-text to the trophy item
+     * @return the itemstack
+     */
+    public ItemStack createDrop(boolean addenchants, boolean addeffects, boolean addlore){
+        ItemStack stack = new ItemStack(dropMaterial,1);
+        Enchantment enchantment = addenchants ? getDropEnchantment() : null;
+        if(enchantment!=null) stack.addUnsafeEnchantment(enchantment, 1);
+        ItemMeta meta = stack.getItemMeta();
+
+        meta.setDisplayName(ChatColor.RESET + "" + ChatColor.YELLOW + dropName);
+        if(addlore){
+            meta.setLore(getLore());
+        }
+        if(enchantment!=null) meta.addItemFlags(ItemFlag.HIDE_ENCHANTS);
+        meta.getPersistentDataContainer().set(TrophyType.getTrophyTagKey(), PersistentDataType.STRING, getTag());
+        if(dropMaterial==Material.POTION){
+            meta.addItemFlags(ItemFlag.HIDE_ADDITIONAL_TOOLTIP);
+            PotionMeta potMeta = (PotionMeta) meta;
+            potMeta.setColor(Color.BLUE);
+            if(addeffects){
+                potMeta.addCustomEffect(new PotionEffect(PotionEffectType.GLOWING,300*TPS,1),true);
+                potMeta.addCustomEffect(new PotionEffect(PotionEffectType.SATURATION,3*TPS,10),false);
+            }
+        }
+
+        stack.setItemMeta(meta);
+        return stack;
+    }
+
+    static String camelCase(String str)
+    {
+        StringBuilder builder = new StringBuilder(str);
+        // Flag to keep track if last visited character is a
+        // white space or not
+        boolean isLastSpace = true;
+
+        // Iterate String from beginning to end.
+        for(int i = 0; i < builder.length(); i++)
+        {
+                char ch = builder.charAt(i);
+
+                if(isLastSpace && ch >= 'a' && ch <='z')
+                {
+                        // Character need to be converted to uppercase
+                        builder.setCharAt(i, (char)(ch + ('A' - 'a') ));
+                        isLastSpace = false;
+                }else if (ch != ' ')
+                        isLastSpace = false;
+                else
+                        isLastSpace = true;
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import com.github.crashdemons.miningtrophies.events.BlockDropTrophyEvent;
+import com.github.crashdemons.miningtrophies.events.SimulatedBlockBreakEvent;
+import com.github.crashdemons.miningtrophies.events.TrophyRollEvent;
+import com.github.crashdemons.miningtrophies.metrics.ExitReason;
+import com.github.crashdemons.miningtrophies.metrics.ListenerMetrics;
+import com.github.crashdemons.miningtrophies.metrics.PluginMetrics;
+import com.github.crashdemons.miningtrophies.modifiers.DropRateModifier;
+import com.github.crashdemons.miningtrophies.modifiers.DropRateModifierPipeline;
+import com.github.crashdemons.miningtrophies.modifiers.DropRateModifierType;
+import com.github.crashdemons.miningtrophies.stats.TrophyStat;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Rolls for a trophy when a player breaks a trophy block. Only registered while at least one trophy has a droprate above 0.
+ * @author crash
+ */
+public final class TrophyDropListener implements Listener {
+    private final MiningTrophies plugin;
+
+    /**
+     * Constructs the listener
+     * @param plugin the plugin providing the settings and state used by rolls
+     */
+    public TrophyDropListener(MiningTrophies plugin){
+        this.plugin = plugin;
+    }
+
+    @EventHandler(ignoreCancelled=true, priority = EventPriority.LOWEST)
+    public void onBlockBreakEvent(BlockBreakEvent event){
+        PluginMetrics metrics = plugin.getMetrics();
+        ListenerMetrics listenerMetrics = metrics.getBlockBreak();
+        long start = metrics.start();
+        ExitReason reason = ExitReason.ERROR;
+        try{
+            reason = handleBlockBreak(event);
+        }finally{
+            listenerMetrics.record(reason, start);
+        }
+    }
+    
+    private ExitReason handleBlockBreak(BlockBreakEvent event){
+        if(event instanceof SimulatedBlockBreakEvent) return ExitReason.SIMULATED_BREAK;
+        //stage 1: block and config checks - array reads only
+        Block block = event.getBlock();
+        if(block==null) return ExitReason.MISSING_TARGET;
+        TrophySettings current = plugin.getSettings();
+        TrophyDefinition trophy = current.getRegistry().get(block.getType());
+        if(trophy==null) return ExitReason.NOT_TROPHY_BLOCK;
+        if(event.isCancelled()) return ExitReason.CANCELLED;
+        TrophyType type = trophy.getType();//null for trophies only defined in the configuration, which have no statistics or bad-luck protection
+        double configuredDroprate = trophy.getDropRate();
+        if(configuredDroprate==0.0) return ExitReason.TROPHY_DISABLED;//this trophy is disabled
+        if(current.isTrackPlacedBlocks() && plugin.getPlacedBlockTracker().isPlaced(block)) return ExitReason.PLACED_BLOCK;//placed ore can't be farmed
+        
+        //stage 2: player and tool checks
+        Player player = event.getPlayer();
+        if(player==null) return ExitReason.MISSING_TARGET;
+        if (player.getGameMode() == GameMode.CREATIVE) return ExitReason.CREATIVE;//players in creative destroy blocks, they don't mine them.
+        boolean statsEnabled = current.isStatsEnabled() && type!=null;
+        if(statsEnabled) plugin.getStatistics().record(player.getUniqueId(), type, TrophyStat.BLOCKS_MINED);
+        ItemStack tool = player.getEquipment().getItemInMainHand();
+        int lootingLevel=0;
+        if (tool != null) {
+            if(!TrophyRoll.isPermittedTool(tool.getType(), tool.getEnchantmentLevel(Enchantment.SILK_TOUCH))) return ExitReason.TOOL_NOT_PERMITTED;//shears and silk touch are not permitted
+            lootingLevel = tool.getEnchantmentLevel(Enchantment.LOOTING);
+        }
+        
+        //stage 3: permission checks - cached per player
+        if(!plugin.getPermissionCache().canBeRewarded(player)) return ExitReason.NO_PERMISSION;//can't get rewards
+        
+        //stage 4: check drop rates
+        RollSource source = plugin.getRollSource();
+        if(statsEnabled) plugin.getStatistics().record(player.getUniqueId(), type, TrophyStat.ROLLS_ATTEMPTED);
+        double droprollOriginal = source.nextRoll();
+        boolean playerAlwaysRewarded = plugin.getPermissionCache().isAlwaysRewarded(player);
+        double droproll = playerAlwaysRewarded ? 0.00 : droprollOriginal;//this player always gets good rolls.
+        DropRateModifier fortune = current.getFortuneModifier(lootingLevel);
+        DropRateModifierPipeline pipeline = current.getModifierPipeline();
+        boolean pityEnabled = current.isPityEnabled() && type!=null;
+        int pityAttempts = pityEnabled ? plugin.getPityTracker().recordAttempt(player.getUniqueId(), type) : 0;
+        double pityFactor = current.getPityFactor(pityAttempts);
+        double droprateEffective = TrophyRoll.getEffectiveDropRate(current, trophy, lootingLevel, pipeline.getFactor(block), pityAttempts);
+        
+        boolean droprollSuccess = TrophyRoll.isSuccess(droproll, droprateEffective);
+        if(TrophyRollEvent.getHandlerList().getRegisteredListeners().length > 0){//the event is only needed if another plugin can see it.
+            TrophyRollEvent rollEvent = new TrophyRollEvent(player,block,playerAlwaysRewarded,droprollOriginal,droproll,configuredDroprate,droprateEffective,droprollSuccess,source);
+            rollEvent.setModifier("fortune", fortune);
+            pipeline.addModifiers(block, rollEvent::setModifier);
+            if(pityFactor!=1.0) rollEvent.setModifier("pity", new DropRateModifier(DropRateModifierType.MULTIPLY, pityFactor));
+            plugin.getServer().getPluginManager().callEvent(rollEvent);
+            droprollSuccess = rollEvent.succeeded();
+        }
+        if(!droprollSuccess){//bad roll
+            //getLogger().info("Roll wasn't lucky");
+            return ExitReason.ROLL_FAILED;
+        }
+        
+        
+        if(!plugin.getProtectionChecker().check(player, block)){
+            //getLogger().info("Simulated block break cancelled.");
+            event.setCancelled(true);
+            return ExitReason.PROTECTION_VETO;
+        }
+        
+        
+        ItemStack item = plugin.createTrophyDrop(trophy);
+        
+        BlockDropTrophyEvent trophyEvent = new BlockDropTrophyEvent(block,player,item);
+        plugin.getServer().getPluginManager().callEvent(trophyEvent);
+        if (trophyEvent.isCancelled()){//another plugin caught and cancelled the trophy event - don't drop.
+            //getLogger().info("Trophy event cancelled.");
+            return ExitReason.DROP_CANCELLED;
+        }
+        if(pityEnabled) plugin.getPityTracker().reset(player.getUniqueId(), type);
+        
+        
+        Location location = block.getLocation();
+        plugin.deferTrophyWon(player, trophy, 1, current);
+        
+        if(plugin.isNCPEnabled()){//NCP seems to disable the block-break without cancelling it, but allows the drops.
+            event.setCancelled(true);
+            block.setType(Material.AIR);
+        }
+        //event.setCancelled(true);
+        //getLogger().info("Original break cancelled? "+event.isCancelled());
+        //block.setType(Material.AIR);
+        location.getWorld().dropItemNaturally(location, item);
+        return ExitReason.DROPPED;
+    }
+}
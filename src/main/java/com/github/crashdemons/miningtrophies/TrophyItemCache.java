@@ -0,0 +1,96 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * A cache of prototype trophy itemstacks, one per trophy definition and combination of item options.
+ *
+ * Prototypes are built on first use and never handed out directly - callers always receive a clone.
+ * Prototypes are indexed by the ids of one registry, so the cache must be invalidated with the new registry whenever the configuration is reloaded.
+ * Definitions from any other registry are still created correctly, just without caching.
+ * @author crash
+ */
+public final class TrophyItemCache {
+    private static final int VARIANTS = 8;//one entry per combination of addenchants/addeffects/addlore
+
+    private static final class Prototypes {
+        final TrophyRegistry registry;
+        final AtomicReferenceArray<ItemStack> items;
+
+        Prototypes(TrophyRegistry registry){
+            this.registry = registry;
+            items = new AtomicReferenceArray<>(registry.size() * VARIANTS);
+        }
+    }
+
+    private volatile Prototypes prototypes;
+
+    /**
+     * Constructs an empty cache for the current registry
+     */
+    public TrophyItemCache(){
+        prototypes = new Prototypes(TrophyRegistry.getCurrent());
+    }
+
+    private static int indexOf(TrophyDefinition trophy, boolean addenchants, boolean addeffects, boolean addlore){
+        int variant = (addenchants ? 1 : 0) | (addeffects ? 2 : 0) | (addlore ? 4 : 0);
+        return trophy.getId() * VARIANTS + variant;
+    }
+
+    /**
+     * Creates a new itemstack of a trophy by cloning the cached prototype (building it if necessary).
+     * @param trophy the trophy
+     * @param addenchants controls whether to add default enchantments to the trophy item
+     * @param addeffects controls whether to add default potion effects to the trophy item
+     * @param addlore controls whether to add lore-text to the trophy item
+     * @return a new itemstack that the caller may freely modify
+     * @see TrophyDefinition#createDrop(boolean, boolean, boolean)
+     */
+    public ItemStack createDrop(TrophyDefinition trophy, boolean addenchants, boolean addeffects, boolean addlore){
+        Prototypes current = prototypes;
+        if(current.registry.get(trophy.getId())!=trophy) return trophy.createDrop(addenchants, addeffects, addlore);//from another registry, such as one replaced by a reload
+        int index = indexOf(trophy, addenchants, addeffects, addlore);
+        ItemStack prototype = current.items.get(index);
+        if(prototype==null){//concurrent builds produce identical prototypes, so whichever is stored last is fine.
+            prototype = trophy.createDrop(addenchants, addeffects, addlore);
+            current.items.set(index, prototype);
+        }
+        return prototype.clone();
+    }
+
+    /**
+     * Creates a new itemstack of a trophy type by cloning the cached prototype (building it if necessary).
+     * @param type the type of trophy
+     * @param addenchants controls whether to add default enchantments to the trophy item
+     * @param addeffects controls whether to add default potion effects to the trophy item
+     * @param addlore controls whether to add lore-text to the trophy item
+     * @return a new itemstack that the caller may freely modify
+     * @see TrophyType#createDrop(boolean, boolean, boolean)
+     */
+    public ItemStack createDrop(TrophyType type, boolean addenchants, boolean addeffects, boolean addlore){
+        TrophyDefinition trophy = prototypes.registry.get(type);
+        if(trophy==null) return type.createDrop(addenchants, addeffects, addlore);
+        return createDrop(trophy, addenchants, addeffects, addlore);
+    }
+
+    /**
+     * Discards all prototypes so that they are rebuilt on next use, from the current registry.
+     */
+    public void invalidate(){
+        invalidate(TrophyRegistry.getCurrent());
+    }
+
+    /**
+     * Discards all prototypes so that they are rebuilt on next use.
+     * @param registry the registry that trophies will be created from
+     */
+    public void invalidate(TrophyRegistry registry){
+        prototypes = new Prototypes(registry);
+    }
+}
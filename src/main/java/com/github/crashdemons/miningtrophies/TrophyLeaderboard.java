@@ -0,0 +1,106 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import com.github.crashdemons.miningtrophies.stats.LeaderboardEntry;
+import com.github.crashdemons.miningtrophies.stats.TopKTracker;
+import com.github.crashdemons.miningtrophies.stats.TrophyStat;
+import com.github.crashdemons.miningtrophies.stats.TrophyStatistics;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The top trophy collectors, overall and per trophy type.
+ *
+ * Leaderboards are maintained incrementally as trophies are won, so queries never scan or sort player statistics.
+ * Query results are immutable snapshots and can be read from any thread.
+ * @author crash
+ */
+public final class TrophyLeaderboard {
+    private volatile TopKTracker overall;
+    private volatile TopKTracker[] byType;
+
+    /**
+     * Constructs empty leaderboards
+     * @param capacity the number of players kept on each leaderboard
+     */
+    public TrophyLeaderboard(int capacity){
+        byType = newTrackers(capacity);
+        overall = new TopKTracker(capacity);
+    }
+
+    private static TopKTracker[] newTrackers(int capacity){
+        TopKTracker[] trackers = new TopKTracker[TrophyType.values().length];
+        for(int i=0;i<trackers.length;i++) trackers[i] = new TopKTracker(capacity);
+        return trackers;
+    }
+
+    /**
+     * Gets the number of players kept on each leaderboard
+     * @return the leaderboard capacity
+     */
+    public int getCapacity(){
+        return overall.getCapacity();
+    }
+
+    /**
+     * Rebuilds the leaderboards from the statistics of every player. This visits every player and should only be done when loading, or when the capacity changes.
+     * Must not be called while another rebuild is running.
+     * @param statistics the statistics to rank players by
+     * @param capacity the number of players kept on each leaderboard
+     */
+    public void rebuild(TrophyStatistics statistics, int capacity){
+        TopKTracker[] trackers = newTrackers(capacity);
+        TopKTracker total = new TopKTracker(capacity);
+        statistics.forEachPlayer((player, counts) -> {
+            long sum = 0;
+            for(TrophyType type : TrophyType.values()){
+                long won = counts[TrophyStatistics.index(type, TrophyStat.TROPHIES_WON)];
+                if(won==0) continue;
+                trackers[type.ordinal()].update(player, won);
+                sum += won;
+            }
+            if(sum>0) total.update(player, sum);
+        });
+        byType = trackers;
+        overall = total;
+    }
+
+    /**
+     * Updates the leaderboards after a player won a trophy. Safe to call from any thread, after the win was recorded in the statistics.
+     * @param player the UUID of the player
+     * @param type the type of trophy won
+     * @param statistics the statistics the win was recorded in
+     */
+    public void onTrophyWon(UUID player, TrophyType type, TrophyStatistics statistics){
+        byType[type.ordinal()].update(player, statistics.get(player, type, TrophyStat.TROPHIES_WON));
+        overall.update(player, statistics.get(player, TrophyStat.TROPHIES_WON));
+    }
+
+    private static List<LeaderboardEntry> limit(List<LeaderboardEntry> entries, int count){
+        if(count<0 || count>=entries.size()) return entries;
+        return entries.subList(0, count);
+    }
+
+    /**
+     * Gets the players that won the most trophies of any type
+     * @param count the maximum number of players to return, up to the leaderboard capacity
+     * @return an immutable list of players, highest count first
+     */
+    public List<LeaderboardEntry> getTop(int count){
+        return limit(overall.snapshot(), count);
+    }
+
+    /**
+     * Gets the players that won the most trophies of a type
+     * @param type the trophy type
+     * @param count the maximum number of players to return, up to the leaderboard capacity
+     * @return an immutable list of players, highest count first
+     */
+    public List<LeaderboardEntry> getTop(TrophyType type, int count){
+        return limit(byType[type.ordinal()].snapshot(), count);
+    }
+}
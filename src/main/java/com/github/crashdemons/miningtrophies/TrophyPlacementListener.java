@@ -0,0 +1,56 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import com.github.crashdemons.miningtrophies.metrics.ExitReason;
+import com.github.crashdemons.miningtrophies.metrics.ListenerMetrics;
+import com.github.crashdemons.miningtrophies.metrics.PluginMetrics;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Prevents trophy items from being placed as blocks. Only registered while the disableplacement setting is enabled.
+ *
+ * Most trophy materials cannot be placed at all, so placements are first checked against a bitset of placeable trophy materials
+ * and only the rest have their item meta inspected for the trophy tag.
+ * @author crash
+ */
+public final class TrophyPlacementListener implements Listener {
+    private final PluginMetrics metrics;
+
+    /**
+     * Constructs the listener
+     * @param metrics the metrics to record placements to
+     */
+    public TrophyPlacementListener(PluginMetrics metrics){
+        this.metrics = metrics;
+    }
+
+    @EventHandler(ignoreCancelled=true,priority=EventPriority.LOWEST)
+    public void onBlockPlace(BlockPlaceEvent event){
+        ListenerMetrics listenerMetrics = metrics.getBlockPlace();
+        long start = metrics.start();
+        ExitReason reason = ExitReason.ERROR;
+        try{
+            reason = handleBlockPlace(event);
+        }finally{
+            listenerMetrics.record(reason, start);
+        }
+    }
+
+    private ExitReason handleBlockPlace(BlockPlaceEvent event){
+        ItemStack item = event.getItemInHand();
+        if(item==null) return ExitReason.MISSING_TARGET;
+        TrophyRegistry registry = TrophyRegistry.getCurrent();
+        if(!registry.isPlaceableTrophyMaterial(item.getType())) return ExitReason.PREFILTERED;
+        if(registry.identifyTrophyItem(item)==null) return ExitReason.NOT_TROPHY_ITEM;
+        event.setCancelled(true);
+        return ExitReason.PLACEMENT_BLOCKED;
+    }
+}
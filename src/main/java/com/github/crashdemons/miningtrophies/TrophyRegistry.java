@@ -0,0 +1,373 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
+
+/**
+ * An immutable set of trophy definitions, with lookups by block material, id, name and trophy item.
+ *
+ * Every Material is resolved once when the registry is built, so looking up the trophy of a block is a single array read.
+ * The plugin builds a new registry from the "trophies" section of config.yml on every reload and publishes it in one step,
+ * so a block break never sees a mix of old and new definitions.
+ * @author crash
+ */
+public final class TrophyRegistry {
+    private static final String LEGACY_PREFIX = "LEGACY_";//the prefix of the pre-1.13 materials kept in the enum for old plugins
+    private static final LongAdder legacyIdentifications = new LongAdder();
+    private static volatile TrophyRegistry current = null;
+
+    private final TrophyDefinition[] definitions;//indexed by id
+    private final List<TrophyDefinition> definitionList;
+    private final TrophyDefinition[] materialLookup;//indexed by Material ordinal
+    private final TrophyDefinition[] typeLookup;//indexed by TrophyType ordinal
+    private final Map<String,TrophyDefinition> nameLookup;//by lowercase name
+    private final Map<String,TrophyDefinition> loreLookup;//by identifying lore without colors
+    private final BitSet dropMaterials = new BitSet();
+    private final BitSet placeableDropMaterials = new BitSet();
+    private final List<String> warnings;
+
+    private TrophyRegistry(List<TrophyDefinition> definitions, List<String> warnings){
+        this.definitions = definitions.toArray(new TrophyDefinition[0]);
+        definitionList = Collections.unmodifiableList(Arrays.asList(this.definitions));
+        materialLookup = new TrophyDefinition[Material.values().length];
+        typeLookup = new TrophyDefinition[TrophyType.values().length];
+        HashMap<String,TrophyDefinition> names = new HashMap<>();
+        HashMap<String,TrophyDefinition> lore = new HashMap<>();
+        ArrayList<String> problems = new ArrayList<>(warnings);
+        for(TrophyDefinition definition : this.definitions){
+            for(Material block : definition.getBlockMaterials()){
+                TrophyDefinition existing = materialLookup[block.ordinal()];
+                if(existing!=null) problems.add(block.name().toLowerCase()+" already drops "+existing.getName()+", not "+definition.getName());
+                else materialLookup[block.ordinal()] = definition;
+            }
+            if(definition.getType()!=null) typeLookup[definition.getType().ordinal()] = definition;
+            names.put(definition.getName(), definition);
+            lore.put(ChatColor.stripColor(definition.getIdentifyingLore()), definition);
+            dropMaterials.set(definition.getDropMaterial().ordinal());
+            if(isPlaceable(definition.getDropMaterial())) placeableDropMaterials.set(definition.getDropMaterial().ordinal());
+        }
+        nameLookup = names;
+        loreLookup = lore;
+        this.warnings = Collections.unmodifiableList(problems);
+    }
+
+    private static boolean isPlaceable(Material mat){
+        return mat.isBlock() || mat==Material.REDSTONE || mat==Material.STRING;//redstone and string are placed as wire and tripwire blocks
+    }
+
+    /**
+     * Gets the registry currently used by the plugin, and by the static lookups of {@link TrophyType}
+     * @return the current registry, or the built-in trophies if the plugin has not loaded its configuration
+     */
+    public static TrophyRegistry getCurrent(){
+        TrophyRegistry registry = current;
+        if(registry==null){//racing threads build identical registries, so no lock is needed
+            registry = builtIn();
+            current = registry;
+        }
+        return registry;
+    }
+
+    static void setCurrent(TrophyRegistry registry){
+        current = registry;
+    }
+
+    /**
+     * Creates a registry of the built-in trophies, one for each {@link TrophyType}, with droprates of 0
+     * @return the registry
+     */
+    public static TrophyRegistry builtIn(){
+        ArrayList<TrophyDefinition> definitions = new ArrayList<>();
+        for(TrophyType type : TrophyType.values()) definitions.add(createBuiltIn(definitions.size(), type, 0.0));
+        return new TrophyRegistry(definitions, Collections.emptyList());
+    }
+
+    private static TrophyDefinition createBuiltIn(int id, TrophyType type, double dropRate){
+        return new TrophyDefinition(id, type.name(), type.getBuiltInDropName(), type.getBuiltInDropMaterial(), type.getBuiltInDropLore(), type.getBuiltInDropEnchantment(), dropRate, getBuiltInBlocks(type));
+    }
+
+    private static boolean isLegacy(Material mat){
+        return mat.name().startsWith(LEGACY_PREFIX);//Material.isLegacy() is deprecated
+    }
+
+    private static List<Material> getBuiltInBlocks(TrophyType type){
+        Material block = type.getBlockMaterial();
+        ArrayList<Material> blocks = new ArrayList<>();
+        for(Material mat : Material.values()){
+            if(!isLegacy(mat) && TrophyType.resolveOreVariant(mat)==block) blocks.add(mat);//the block and its deepslate variant
+        }
+        return blocks;
+    }
+
+    /**
+     * Parses the trophy definitions from a configuration.
+     *
+     * Each key of the "trophies" section is the name of a trophy, with its "blocks" (material names, which may use * as a wildcard),
+     * and the "name", "drop" material, "lore", "enchantment" and "droprate" of the trophy.
+     * A trophy without a droprate uses the {@code <name>droprate} setting at the top of the configuration,
+     * and a trophy named after a {@link TrophyType} uses the built-in values for anything else it leaves out.
+     * If the configuration itself has no "trophies" section, the built-in trophies are used.
+     * Defaults are ignored for this check, because the defaults from the plugin jar would otherwise supply an empty section to configurations written before trophies were configurable.
+     * Invalid materials are skipped and reported by {@link #getWarnings()}.
+     * @param config the plugin configuration (or equivalent section)
+     * @return the parsed registry
+     */
+    public static TrophyRegistry fromConfig(ConfigurationSection config){
+        ArrayList<TrophyDefinition> definitions = new ArrayList<>();
+        ArrayList<String> warnings = new ArrayList<>();
+        ConfigurationSection section = config.isSet("trophies") ? config.getConfigurationSection("trophies") : null;
+        if(section==null){
+            for(TrophyType type : TrophyType.values()){
+                definitions.add(createBuiltIn(definitions.size(), type, config.getDouble(type.getDropConfigName())));
+            }
+            return new TrophyRegistry(definitions, warnings);
+        }
+        HashSet<String> names = new HashSet<>();
+        for(String key : section.getKeys(false)){
+            String name = key.toLowerCase(Locale.ROOT);
+            ConfigurationSection entry = section.getConfigurationSection(key);
+            if(entry==null){
+                warnings.add("trophy "+name+" is not a section");
+                continue;
+            }
+            if(names.contains(name)){
+                warnings.add("trophy "+name+" is defined more than once");
+                continue;
+            }
+            TrophyDefinition definition = parseDefinition(definitions.size(), name, entry, TrophyDefinition.findType(name), config, warnings);
+            if(definition==null) continue;
+            definitions.add(definition);
+            names.add(name);
+        }
+        return new TrophyRegistry(definitions, warnings);
+    }
+
+    private static TrophyDefinition parseDefinition(int id, String name, ConfigurationSection entry, TrophyType builtIn, ConfigurationSection config, List<String> warnings){
+        List<Material> blocks = new ArrayList<>();
+        Object blockList = entry.get("blocks");
+        if(blockList instanceof List){
+            for(Object block : (List<?>) blockList) addBlocks(name, String.valueOf(block), blocks, warnings);
+        }else if(blockList!=null){
+            addBlocks(name, blockList.toString(), blocks, warnings);
+        }else if(builtIn!=null){
+            blocks.addAll(getBuiltInBlocks(builtIn));
+        }
+        if(blocks.isEmpty()){
+            warnings.add("trophy "+name+" has no blocks");
+            return null;
+        }
+
+        Material dropMaterial = builtIn==null ? null : builtIn.getBuiltInDropMaterial();
+        String drop = entry.getString("drop");
+        if(drop!=null) dropMaterial = matchMaterial(drop);
+        if(dropMaterial==null || !dropMaterial.isItem()){
+            warnings.add("trophy "+name+" has an unknown drop material: "+drop);
+            return null;
+        }
+
+        String dropName = entry.getString("name");
+        if(dropName==null) dropName = builtIn==null ? TrophyDefinition.camelCase(name.replace("_", " "))+" Trophy" : builtIn.getBuiltInDropName();
+        String lore = entry.getString("lore");
+        if(lore==null) lore = builtIn==null ? "" : builtIn.getBuiltInDropLore();
+        String enchantment = entry.getString("enchantment");
+        if(enchantment==null) enchantment = builtIn==null ? "looting" : builtIn.getBuiltInDropEnchantment();
+        Object rate = entry.get("droprate");
+        double dropRate = rate instanceof Number ? ((Number) rate).doubleValue() : config.getDouble(name.replace("_", "")+"droprate");
+        return new TrophyDefinition(id, name, dropName, dropMaterial, lore, enchantment, dropRate, blocks);
+    }
+
+    private static void addBlocks(String trophy, String pattern, List<Material> blocks, List<String> warnings){
+        String name = pattern.toLowerCase(Locale.ROOT);
+        if(name.startsWith("minecraft:")) name = name.substring("minecraft:".length());
+        if(!name.contains("*")){
+            Material mat = matchMaterial(name);
+            if(mat==null || !mat.isBlock()) warnings.add("trophy "+trophy+" has an unknown block: "+pattern);
+            else if(!blocks.contains(mat)) blocks.add(mat);
+            return;
+        }
+        Pattern glob = Pattern.compile(Pattern.quote(name).replace("*", "\\E.*\\Q"));
+        boolean matched = false;
+        for(Material mat : Material.values()){
+            if(isLegacy(mat) || !mat.isBlock() || !glob.matcher(mat.name().toLowerCase(Locale.ROOT)).matches()) continue;
+            matched = true;
+            if(!blocks.contains(mat)) blocks.add(mat);
+        }
+        if(!matched) warnings.add("trophy "+trophy+" has a block pattern that matches nothing: "+pattern);
+    }
+
+    private static Material matchMaterial(String name){
+        try{
+            return Material.valueOf(name.toUpperCase(Locale.ROOT));
+        }catch(IllegalArgumentException e){
+            return Material.matchMaterial(name);
+        }
+    }
+
+    /**
+     * Gets the problems found while parsing the configuration, such as unknown materials
+     * @return the warnings, which are empty if the configuration was valid
+     */
+    public List<String> getWarnings(){
+        return warnings;
+    }
+
+    /**
+     * Gets the number of trophies defined
+     * @return the number of definitions, one more than the highest id
+     */
+    public int size(){
+        return definitions.length;
+    }
+
+    /**
+     * Gets a trophy by its id
+     * @param id the id of the trophy
+     * @return the definition, or null if there is no trophy with that id
+     */
+    public TrophyDefinition get(int id){
+        return id>=0 && id<definitions.length ? definitions[id] : null;
+    }
+
+    /**
+     * Gets the trophy dropped by a block material
+     * @param mat the material of a block to drop a trophy when mined
+     * @return the definition, or null if the block does not drop a trophy
+     */
+    public TrophyDefinition get(Material mat){
+        if(mat==null) return null;
+        return materialLookup[mat.ordinal()];
+    }
+
+    /**
+     * Gets the trophy of a built-in trophy type
+     * @param type the trophy type
+     * @return the definition, or null if the type is not configured
+     */
+    public TrophyDefinition get(TrophyType type){
+        return typeLookup[type.ordinal()];
+    }
+
+    /**
+     * Gets a trophy by its name
+     * @param name the name of the trophy, in any case
+     * @return the definition, or null if there is no trophy with that name
+     */
+    public TrophyDefinition get(String name){
+        return nameLookup.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Gets every trophy, in id order
+     * @return the definitions
+     */
+    public List<TrophyDefinition> getDefinitions(){
+        return definitionList;
+    }
+
+    /**
+     * Checks whether any trophy has a droprate other than 0, so that block breaks need to be rolled at all.
+     * @return whether any trophy is enabled
+     */
+    public boolean hasEnabledTrophies(){
+        for(TrophyDefinition definition : definitions){
+            if(definition.getDropRate()!=0.0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a material is used by any trophy item.
+     * Items of any other material can be rejected as non-trophies without inspecting their meta.
+     * @param mat the material of an item
+     * @return whether the material is used by a trophy
+     */
+    public boolean isTrophyDropMaterial(Material mat){
+        return dropMaterials.get(mat.ordinal());
+    }
+
+    /**
+     * Checks whether a material is used by any trophy item that can be placed as a block.
+     * Placing an item of any other material can be allowed without inspecting its meta.
+     * @param mat the material of an item
+     * @return whether the material is used by a placeable trophy
+     */
+    public boolean isPlaceableTrophyMaterial(Material mat){
+        return placeableDropMaterials.get(mat.ordinal());
+    }
+
+    /**
+     * Identifies a trophy by a line of its lore
+     * @param loreLine the lore line, with or without colors
+     * @return the definition, or null if the line is not the identifying lore of a trophy
+     */
+    public TrophyDefinition identifyTrophyLore(String loreLine){
+        return loreLookup.get(ChatColor.stripColor(loreLine));
+    }
+
+    /**
+     * Gets the number of times a trophy was identified only by its lore because it had no trophy tag (items created before 0.10.0).
+     * @return the number of legacy identifications
+     */
+    public static long getLegacyIdentificationCount(){
+        return legacyIdentifications.sum();
+    }
+
+    private TrophyDefinition identifyLegacyTrophyLore(ItemMeta meta){
+        if(!meta.hasLore()){
+            return null;
+        }
+        for(String loreLine : meta.getLore()){
+            TrophyDefinition definition = identifyTrophyLore(loreLine);
+            if(definition!=null){
+                legacyIdentifications.increment();
+                return definition;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Identifies the trophy of an item's meta, by its trophy tag or (for legacy items) its lore.
+     * @param meta the item meta to check
+     * @return the definition, or null if the meta does not belong to a trophy that is still defined
+     */
+    public TrophyDefinition identifyTrophyMeta(ItemMeta meta){
+        String tag = meta.getPersistentDataContainer().get(TrophyType.getTrophyTagKey(), PersistentDataType.STRING);
+        if(tag!=null){
+            return nameLookup.get(tag.toLowerCase(Locale.ROOT));
+        }
+        return identifyLegacyTrophyLore(meta);
+    }
+
+    /**
+     * Identifies the trophy of an item, by its trophy tag or (for legacy items) its lore.
+     * @param stack the item to check
+     * @return the definition, or null if the item is not a trophy that is still defined
+     */
+    public TrophyDefinition identifyTrophyItem(ItemStack stack){
+        if(!stack.hasItemMeta()){
+            return null;
+        }
+        return identifyTrophyMeta(stack.getItemMeta());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import org.bukkit.Material;
+
+/**
+ * The rules shared by every trophy roll: which tools may roll for trophies, how the configured droprate is modified, and when a roll succeeds.
+ *
+ * Block breaks, batched rolls and the drop simulator all go through these methods, so simulated droprates are the ones players actually get.
+ * @author crash
+ */
+public final class TrophyRoll {
+    private TrophyRoll(){}
+
+    /**
+     * Checks whether a tool may roll for trophies at all
+     * @param toolType the material of the tool in the player's main hand
+     * @param silkTouchLevel the level of silk touch on the tool
+     * @return whether trophies can be rolled for blocks broken with the tool
+     */
+    public static boolean isPermittedTool(Material toolType, int silkTouchLevel){
+        if(toolType==Material.SHEARS) return false;//shears are not permitted for trophies
+        return silkTouchLevel<=0;//silk touch is not permitted to generate rewards
+    }
+
+    /**
+     * Gets the chance of a roll succeeding, after the fortune, location and bad-luck protection modifiers are applied to the configured droprate.
+     * @param settings the current settings
+     * @param type the type of trophy rolled for
+     * @param lootingLevel the level of looting on the tool
+     * @param locationFactor the multiplier of the world, biome, depth and time modifiers for the block
+     * @param pityAttempts the number of attempts since the player last received the trophy, including this one, or 0 if bad-luck protection is disabled
+     * @return the droprate as a fraction (0.01 = 1%)
+     */
+    public static double getEffectiveDropRate(TrophySettings settings, TrophyType type, int lootingLevel, double locationFactor, int pityAttempts){
+        return getEffectiveDropRate(settings, settings.getDropRate(type), lootingLevel, locationFactor, pityAttempts);
+    }
+
+    /**
+     * Gets the chance of a roll succeeding, after the fortune, location and bad-luck protection modifiers are applied to the configured droprate.
+     * @param settings the current settings
+     * @param trophy the trophy rolled for
+     * @param lootingLevel the level of looting on the tool
+     * @param locationFactor the multiplier of the world, biome, depth and time modifiers for the block
+     * @param pityAttempts the number of attempts since the player last received the trophy, including this one, or 0 if bad-luck protection does not apply
+     * @return the droprate as a fraction (0.01 = 1%)
+     */
+    public static double getEffectiveDropRate(TrophySettings settings, TrophyDefinition trophy, int lootingLevel, double locationFactor, int pityAttempts){
+        return getEffectiveDropRate(settings, trophy.getDropRate(), lootingLevel, locationFactor, pityAttempts);
+    }
+
+    private static double getEffectiveDropRate(TrophySettings settings, double droprate, int lootingLevel, double locationFactor, int pityAttempts){
+        return settings.getFortuneModifier(lootingLevel).apply(droprate) * locationFactor * settings.getPityFactor(pityAttempts);
+    }
+
+    /**
+     * Checks whether a roll succeeded
+     * @param droproll the random value rolled, in the range [0,1)
+     * @param droprate the effective droprate
+     * @return whether the roll wins a trophy
+     */
+    public static boolean isSuccess(double droproll, double droprate){
+        return droproll < droprate;
+    }
+}
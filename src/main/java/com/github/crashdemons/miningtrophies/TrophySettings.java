@@ -0,0 +1,359 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import com.github.crashdemons.miningtrophies.modifiers.DropRateModifier;
+import com.github.crashdemons.miningtrophies.modifiers.DropRateModifierPipeline;
+import com.github.crashdemons.miningtrophies.modifiers.DropRateModifierType;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * An immutable snapshot of the plugin configuration, parsed once when the config is (re)loaded.
+ *
+ * Event handlers should read these fields instead of querying the configuration on every event.
+ * @author crash
+ */
+public final class TrophySettings {
+    private static final int PRECOMPILED_FORTUNE_LEVELS = 10;
+    
+    private final double fortuneRate;
+    private final DropRateModifier[] fortuneModifiers;
+    private final TrophyRegistry registry;
+    private final double[] dropRates;//indexed by TrophyType ordinal
+    private final boolean enabledTrophies;
+    private final DropRateModifierPipeline modifierPipeline;
+
+    private final boolean addEnchants;
+    private final boolean addEffects;
+    private final boolean addLore;
+
+    private final boolean disablePlacement;
+    private final boolean fixDroppedTrophies;
+    private final boolean trackPlacedBlocks;
+
+    private final boolean broadcast;
+    private final int broadcastRange;
+    private final int broadcastWindow;
+    private final int broadcastPlayerLimit;
+    private final int broadcastGlobalLimit;
+
+    private final int permissionCacheTime;
+
+    private final ProtectionCheckMode protectionCheckMode;
+    private final int protectionCacheTime;
+
+    private final boolean pityEnabled;
+    private final int pityThreshold;
+    private final double pityRamp;
+    private final double pityMaxMultiplier;
+    private final int pitySaveInterval;
+
+    private final boolean statsEnabled;
+    private final int statsFlushInterval;
+    private final int leaderboardSize;
+
+    private final boolean metricsTiming;
+    private final String metricsFile;
+    private final int metricsFileInterval;
+    private final long deferredTickBudget;
+
+    private TrophySettings(ConfigurationSection config){
+        fortuneRate = config.getDouble("fortunerate");
+        fortuneModifiers = new DropRateModifier[PRECOMPILED_FORTUNE_LEVELS+1];
+        for(int level=0;level<fortuneModifiers.length;level++){
+            fortuneModifiers[level] = createFortuneModifier(level);
+        }
+
+        registry = TrophyRegistry.fromConfig(config);
+        dropRates = new double[TrophyType.values().length];
+        for(TrophyDefinition definition : registry.getDefinitions()){
+            if(definition.getType()!=null) dropRates[definition.getType().ordinal()] = definition.getDropRate();
+        }
+        enabledTrophies = registry.hasEnabledTrophies();
+        modifierPipeline = DropRateModifierPipeline.fromConfig(config.getConfigurationSection("modifiers"));
+
+        addEnchants = config.getBoolean("addenchants");
+        addEffects = config.getBoolean("addeffects");
+        addLore = config.getBoolean("addlore");
+
+        disablePlacement = config.getBoolean("disableplacement");
+        fixDroppedTrophies = config.getBoolean("fixdroppedtrophies");
+        trackPlacedBlocks = config.getBoolean("trackplacedblocks");
+
+        broadcast = config.getBoolean("broadcast");
+        broadcastRange = config.getInt("broadcastrange");
+        broadcastWindow = config.getInt("broadcastwindow");
+        broadcastPlayerLimit = config.getInt("broadcastplayerlimit");
+        broadcastGlobalLimit = config.getInt("broadcastgloballimit");
+
+        permissionCacheTime = config.getInt("permissioncachetime");
+
+        protectionCheckMode = ProtectionCheckMode.fromConfigName(config.getString("protectioncheck"));
+        protectionCacheTime = config.getInt("protectioncachetime");
+
+        pityEnabled = config.getBoolean("pity.enabled");
+        pityThreshold = config.getInt("pity.threshold");
+        pityRamp = config.getDouble("pity.ramp");
+        pityMaxMultiplier = config.getDouble("pity.maxmultiplier");
+        pitySaveInterval = config.getInt("pity.saveinterval");
+
+        statsEnabled = config.getBoolean("stats.enabled");
+        statsFlushInterval = config.getInt("stats.flushinterval");
+        leaderboardSize = config.getInt("stats.leaderboardsize");
+
+        metricsTiming = config.getBoolean("metrics.timing");
+        metricsFile = config.getString("metrics.file");
+        metricsFileInterval = config.getInt("metrics.fileinterval");
+
+        deferredTickBudget = config.getLong("deferred.tickbudget");
+    }
+
+    /**
+     * Parses the settings from a configuration
+     * @param config the plugin configuration (or equivalent section)
+     * @return the parsed settings
+     */
+    public static TrophySettings fromConfig(ConfigurationSection config){
+        return new TrophySettings(config);
+    }
+
+    /**
+     * Gets the fraction of the base droprate added per level of looting/fortune on the tool.
+     * @return the fortune rate
+     */
+    public double getFortuneRate(){
+        return fortuneRate;
+    }
+
+    private DropRateModifier createFortuneModifier(int level){
+        return new DropRateModifier(DropRateModifierType.MULTIPLY, 1 + (fortuneRate * level));
+    }
+
+    /**
+     * Gets the droprate modifier applied for a level of looting/fortune on the tool.
+     * Modifiers for common levels are created once per configuration load.
+     * @param level the enchantment level
+     * @return the fortune modifier (a multiplier of 1 or greater)
+     */
+    public DropRateModifier getFortuneModifier(int level){
+        if(level>=0 && level<fortuneModifiers.length) return fortuneModifiers[level];
+        return createFortuneModifier(level);
+    }
+
+    /**
+     * Gets the configured droprate of a trophy type
+     * @param type the trophy type
+     * @return the droprate as a fraction (0.01 = 1%), or 0 if the type is not configured
+     */
+    public double getDropRate(TrophyType type){
+        return dropRates[type.ordinal()];
+    }
+
+    /**
+     * Gets the trophy definitions parsed with these settings
+     * @return the trophy registry
+     */
+    public TrophyRegistry getRegistry(){
+        return registry;
+    }
+
+    /**
+     * Checks whether any trophy has a droprate other than 0, so that block breaks need to be rolled at all.
+     * @return whether any trophy is enabled
+     */
+    public boolean hasEnabledTrophies(){
+        return enabledTrophies;
+    }
+
+    /**
+     * Gets the built-in world, biome, depth and time modifiers.
+     * @return the modifier pipeline
+     */
+    public DropRateModifierPipeline getModifierPipeline() {
+        return modifierPipeline;
+    }
+
+    public boolean isAddEnchants() {
+        return addEnchants;
+    }
+
+    public boolean isAddEffects() {
+        return addEffects;
+    }
+
+    public boolean isAddLore() {
+        return addLore;
+    }
+
+    public boolean isDisablePlacement() {
+        return disablePlacement;
+    }
+
+    public boolean isFixDroppedTrophies() {
+        return fixDroppedTrophies;
+    }
+
+    public boolean isTrackPlacedBlocks() {
+        return trackPlacedBlocks;
+    }
+
+    public boolean isBroadcast() {
+        return broadcast;
+    }
+
+    /**
+     * Gets the range in blocks that trophy broadcasts reach, or 0 (or less) for the entire server.
+     * @return the broadcast range
+     */
+    public int getBroadcastRange() {
+        return broadcastRange;
+    }
+
+    /**
+     * Gets the length in seconds of the window that broadcast limits apply to.
+     * @return the broadcast window length
+     */
+    public int getBroadcastWindow() {
+        return broadcastWindow;
+    }
+
+    /**
+     * Gets the number of broadcasts allowed per finding player within a window, or 0 (or less) for no limit.
+     * @return the per-player broadcast limit
+     */
+    public int getBroadcastPlayerLimit() {
+        return broadcastPlayerLimit;
+    }
+
+    /**
+     * Gets the number of broadcasts allowed for all players within a window, or 0 (or less) for no limit.
+     * @return the global broadcast limit
+     */
+    public int getBroadcastGlobalLimit() {
+        return broadcastGlobalLimit;
+    }
+
+    /**
+     * Gets how long in seconds the reward permissions of a player are cached for, or 0 (or less) to check them on every block break.
+     * @return the permission cache time-to-live
+     */
+    public int getPermissionCacheTime() {
+        return permissionCacheTime;
+    }
+
+    /**
+     * Gets how protection plugins are given the chance to veto trophy drops.
+     * @return the protection check mode
+     */
+    public ProtectionCheckMode getProtectionCheckMode() {
+        return protectionCheckMode;
+    }
+
+    /**
+     * Gets how long in seconds a protection verdict is reused for the same player and chunk, in the cached protection check mode.
+     * @return the protection verdict time-to-live
+     */
+    public int getProtectionCacheTime() {
+        return protectionCacheTime;
+    }
+
+    public boolean isPityEnabled() {
+        return pityEnabled;
+    }
+
+    /**
+     * Gets the number of attempts at a trophy type after which bad-luck protection starts increasing the droprate.
+     * @return the pity threshold
+     */
+    public int getPityThreshold() {
+        return pityThreshold;
+    }
+
+    /**
+     * Gets the fraction of the droprate added for each attempt over the pity threshold.
+     * @return the pity ramp
+     */
+    public double getPityRamp() {
+        return pityRamp;
+    }
+
+    /**
+     * Gets the largest multiplier that bad-luck protection can apply to the droprate.
+     * @return the maximum pity multiplier
+     */
+    public double getPityMaxMultiplier() {
+        return pityMaxMultiplier;
+    }
+
+    /**
+     * Gets how often in seconds changed pity counts are saved.
+     * @return the pity save interval
+     */
+    public int getPitySaveInterval() {
+        return pitySaveInterval;
+    }
+
+    public boolean isStatsEnabled() {
+        return statsEnabled;
+    }
+
+    /**
+     * Gets how often in seconds statistics changes are appended to the statistics log.
+     * At most this many seconds of statistics are lost if the server crashes.
+     * @return the statistics flush interval
+     */
+    public int getStatsFlushInterval() {
+        return statsFlushInterval;
+    }
+
+    /**
+     * Gets the number of players kept on each trophy leaderboard.
+     * @return the leaderboard size
+     */
+    public int getLeaderboardSize() {
+        return leaderboardSize;
+    }
+
+    public boolean isMetricsTiming() {
+        return metricsTiming;
+    }
+
+    /**
+     * Gets the name of the file in the plugin folder that metrics are written to in the Prometheus text format.
+     * @return the metrics file name, or an empty string if the file is disabled
+     */
+    public String getMetricsFile() {
+        return metricsFile==null ? "" : metricsFile;
+    }
+
+    /**
+     * Gets how often in seconds the metrics file is written.
+     * @return the metrics file interval
+     */
+    public int getMetricsFileInterval() {
+        return metricsFileInterval;
+    }
+
+    /**
+     * Gets the time in nanoseconds that deferred trophy side effects (announcements and statistics) may take each tick.
+     * @return the tick budget, or 0 if side effects run immediately
+     */
+    public long getDeferredTickBudget() {
+        return deferredTickBudget;
+    }
+
+    /**
+     * Gets the droprate multiplier applied by bad-luck protection after a number of attempts without a trophy.
+     * @param attempts the number of attempts since the player last received the trophy, including the current one
+     * @return the multiplier, or 1.0 if bad-luck protection does not apply
+     */
+    public double getPityFactor(int attempts) {
+        if(!pityEnabled || attempts<=pityThreshold) return 1.0;
+        double factor = 1.0 + pityRamp * (attempts - pityThreshold);
+        if(pityMaxMultiplier>=1.0 && factor>pityMaxMultiplier) return pityMaxMultiplier;
+        return factor;
+    }
+}
@@ -5,23 +5,19 @@
  */
 package com.github.crashdemons.miningtrophies;
 
-import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import org.bukkit.ChatColor;
-import org.bukkit.Color;
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
 import org.bukkit.enchantments.Enchantment;
-import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.inventory.meta.PotionMeta;
-import org.bukkit.potion.PotionEffect;
-import org.bukkit.potion.PotionEffectType;
 
 /**
- * An enum defining each supported trophy type, with all necessary information to create it.
+ * An enum of the built-in trophy types.
+ * 
+ * Trophies are now defined by the "trophies" section of config.yml and looked up through the {@link TrophyRegistry}.
+ * This enum remains as a view of the built-in trophies for API users: its methods answer from the current registry,
+ * falling back to the built-in values for a type that is not configured. Statistics and bad-luck protection are kept per TrophyType.
  * 
  * Note: generally each enum entry should correspond to a Material type of a block that can be broken.
  * @author crash
@@ -39,8 +35,8 @@ public enum TrophyType {
     LAPIS_ORE("Marbled Lapis",Material.LAPIS_LAZULI),
     NETHER_QUARTZ_ORE("Rose-Quartz",Material.QUARTZ),
     //CLAY("Pure Clay",Material.CLAY_BALL),
-    //GLOWSTONE("Burning Glowstone",Material.GLOWSTONE_DUST,Enchantment.FIRE_ASPECT),
-    //TURTLE_EGG("Scute of Shame",Material.SCUTE,"You know what you did.",Enchantment.WATER_WORKER),
+    //GLOWSTONE("Burning Glowstone",Material.GLOWSTONE_DUST,"","fire_aspect"),
+    //TURTLE_EGG("Scute of Shame",Material.SCUTE,"You know what you did.","aqua_affinity"),
     //GLASS("What-a-pane",Material.GLASS_PANE,"For the experienced griefer."),
     COAL_ORE("Fuming Coal",Material.COAL),
     //SEA_LANTERN("Singing Shard",Material.PRISMARINE_SHARD,"Hums with a strange energy."),
@@ -48,34 +44,90 @@ public enum TrophyType {
     SPAWNER("Spawner Fragment",Material.CHAIN),
     ;
     
-    private String dropName;
-    private String dropLore;
-    private Material dropMaterial;
-    private Enchantment dropEnchantment;
-    private static final int TPS=20;
+    private final String dropName;
+    private final String dropLore;
+    private final Material dropMaterial;
+    private final String dropEnchantment;
     
     
-    private static HashMap<String,TrophyType> loreReference = new HashMap<>();
+    private static final NamespacedKey TROPHY_TAG = NamespacedKey.fromString("miningtrophies:trophy");
+    private static volatile TrophyRegistry builtIn = null;
     
     
     TrophyType(String displayName, Material mat){
-        this(displayName,mat,Enchantment.LOOTING);
-    }
-    TrophyType(String displayName,Material mat,Enchantment ench){
-         this(displayName,mat,"",ench);
+        this(displayName,mat,"","looting");
     }
     TrophyType(String displayName,Material mat,String lore){
-         this(displayName,mat,lore,Enchantment.LOOTING);
+         this(displayName,mat,lore,"looting");
     }
-    TrophyType(String displayName,Material mat,String lore,Enchantment ench){
+    TrophyType(String displayName,Material mat,String lore,String ench){
         dropName=displayName;
         dropMaterial=mat;
         dropEnchantment=ench;
         dropLore=lore;
     }
     
+    String getBuiltInDropName(){ return dropName; }
+    
+    String getBuiltInDropLore(){ return dropLore; }
+    
+    Material getBuiltInDropMaterial(){ return dropMaterial; }
+    
+    String getBuiltInDropEnchantment(){ return dropEnchantment; }
+    
+    /**
+     * Gets the definition of this trophy type
+     * @return the definition in the current registry, or the built-in definition if this type is not configured
+     */
+    public TrophyDefinition getDefinition(){
+        TrophyDefinition definition = TrophyRegistry.getCurrent().get(this);
+        if(definition!=null) return definition;
+        TrophyRegistry registry = builtIn;
+        if(registry==null){
+            registry = TrophyRegistry.builtIn();
+            builtIn = registry;
+        }
+        return registry.get(this);
+    }
+    
     public String getDropName(){
-        return dropName;
+        return getDefinition().getDropName();
+    }
+    
+    /**
+     * Get the enchantment applied to the trophy item (when enchantments are enabled)
+     * @return the enchantment
+     */
+    public Enchantment getDropEnchantment(){
+        return getDefinition().getDropEnchantment();
+    }
+    
+    /**
+     * Get the material of the trophy item that is dropped
+     * @return the item material
+     */
+    public Material getDropMaterial(){
+        return getDefinition().getDropMaterial();
+    }
+    
+    /**
+     * Checks whether a material is used by any trophy item.
+     * Items of any other material can be rejected as non-trophies without inspecting their meta.
+     * @param mat the material of an item
+     * @return whether the material is used by a trophy
+     */
+    public static boolean isTrophyDropMaterial(Material mat){
+        return TrophyRegistry.getCurrent().isTrophyDropMaterial(mat);
+    }
+    
+    /**
+     * Checks whether a material is used by any trophy item that can be placed as a block.
+     * Placing an item of any other material can be allowed without inspecting its meta.
+     * @param mat the material of an item
+     * @return whether the material is used by a placeable trophy
+     */
+    public static boolean isPlaceableTrophyMaterial(Material mat){
+        return TrophyRegistry.getCurrent().isPlaceableTrophyMaterial(mat);
     }
     
     /**
@@ -92,7 +144,7 @@ public enum TrophyType {
      */
     public String getBlockName(){
         String spaced = name().replace("_", " ").toLowerCase();
-        return camelCase(spaced);
+        return TrophyDefinition.camelCase(spaced);
     }
     
     /**
@@ -111,22 +163,6 @@ public enum TrophyType {
         return getShortName()+"droprate";
     }
     
-    private static boolean isStainedGlassBlock(Material mat){//note: regular glass is not included and is a fallthrough/default for the glass trophy
-        if(mat.isBlock()){
-            String matname = mat.name().toUpperCase();
-            return matname.contains("STAINED_GLASS") && !matname.contains("PANE");
-        }
-        return false;
-    }
-    
-    private static boolean isIceVariant(Material mat){//regular ice is excluded
-        if(mat.isBlock()){
-            if(mat==Material.FROSTED_ICE) return false;//explicitly deny this
-            if(mat==Material.BLUE_ICE || mat==Material.PACKED_ICE) return true;
-        }
-        return false;
-    }
-    
     public static Material resolveOreVariant(Material mat){
         if(mat.isBlock()){
             String matname = mat.name().toUpperCase();
@@ -144,25 +180,23 @@ public enum TrophyType {
         return mat;
     }
     
+    /**
+     * Formerly rebuilt the lookup table used by {@link #get(Material)}.
+     * Lookups are now built once by each {@link TrophyRegistry}, so this does nothing.
+     * @deprecated the plugin publishes a new registry when it reloads
+     */
+    @Deprecated
+    public static void rebuildLookup(){
+    }
     
     /**
      * Get the trophytype corresponding to a provided block material
      * @param mat the material of a block to drop a trophy when mined
-     * @return The type of trophy for that block material, or null if none was found.
+     * @return The type of trophy for that block material, or null if none was found or the block drops a trophy that has no TrophyType.
      */
     public static TrophyType get(Material mat){
-        if(isStainedGlassBlock(mat)) mat=Material.GLASS;//consider all glass blocks as normal glass blocks.
-        if(isIceVariant(mat)) mat=Material.ICE;
-        mat = resolveOreVariant(mat);
-        
-        
-        TrophyType type;
-        try{
-            type = valueOf(mat.name().toUpperCase());
-        }catch(Exception e){
-            type = null;
-        }
-        return type;
+        TrophyDefinition definition = TrophyRegistry.getCurrent().get(mat);
+        return definition==null ? null : definition.getType();
     }
     
     /**
@@ -172,45 +206,54 @@ public enum TrophyType {
     public ItemStack createDrop(){ return createDrop(true,true,true); }
     
    public String getIdentifyingLore(){
-        return ChatColor.RESET+""+ChatColor.DARK_PURPLE+getBlockName()+" "+ChatColor.BLUE+""+ChatColor.ITALIC+"Mining Trophy";
-    }
-   
-   
-   private static void createLoreCache(){
-        for(TrophyType type : TrophyType.values()){
-            String strippedLore = ChatColor.stripColor(type.getIdentifyingLore());
-            loreReference.put(strippedLore,type);
-        }
+        return getDefinition().getIdentifyingLore();
    }
 
    public static TrophyType identifyTrophyLore(String loreLine){
-       loreLine = ChatColor.stripColor(loreLine);
-       return loreReference.get(loreLine);
+       return typeOf(TrophyRegistry.getCurrent().identifyTrophyLore(loreLine));
+   }
+   
+   private static TrophyType typeOf(TrophyDefinition definition){
+       return definition==null ? null : definition.getType();
+   }
+   
+   /**
+    * Gets the key of the persistent-data tag that marks an item as a trophy.
+    * The tag value is the name of the TrophyType (or the uppercase name of a configured trophy).
+    * @return the tag key
+    */
+   public static NamespacedKey getTrophyTagKey(){
+       return TROPHY_TAG;
+   }
+   
+   /**
+    * Gets the number of times a trophy was identified only by its lore because it had no trophy tag (items created before 0.10.0).
+    * @return the number of legacy identifications
+    */
+   public static long getLegacyIdentificationCount(){
+       return TrophyRegistry.getLegacyIdentificationCount();
    }
+   
+   /**
+    * Identifies the trophy type of an item's meta, by its trophy tag or (for legacy items) its lore.
+    * @param meta the item meta to check
+    * @return the type of trophy, or null if the meta does not belong to a trophy that has a TrophyType
+    */
+   public static TrophyType identifyTrophyMeta(ItemMeta meta){
+        return typeOf(TrophyRegistry.getCurrent().identifyTrophyMeta(meta));
+   }
+   
+   /**
+    * Identifies the trophy type of an item, by its trophy tag or (for legacy items) its lore.
+    * @param stack the item to check
+    * @return the type of trophy, or null if the item is not a trophy that has a TrophyType
+    */
    public static TrophyType identifyTrophyItem(ItemStack stack){
-        synchronized(loreReference){
-            if(loreReference.isEmpty()) createLoreCache();
-        }
-        if(!stack.hasItemMeta()){
-            return null;
-        }
-        ItemMeta meta = stack.getItemMeta();
-        if(!meta.hasLore()){
-            return null;
-        }
-        List<String> lore = meta.getLore();
-        for(String loreLine : lore){
-            TrophyType type = identifyTrophyLore(loreLine);
-            if(type!=null) return type;
-        }
-        return null;
+        return typeOf(TrophyRegistry.getCurrent().identifyTrophyItem(stack));
     }
     
     public List<String> getLore(){
-        ArrayList<String> lore = new ArrayList<>();
-        if(!dropLore.isEmpty()) lore.add(ChatColor.RESET+""+ChatColor.DARK_PURPLE+ChatColor.ITALIC+dropLore);
-        lore.add(getIdentifyingLore());
-        return lore;
+        return getDefinition().getLore();
     }
     
     /**
@@ -221,52 +264,6 @@ public enum TrophyType {
      * @return the itemstack
      */
     public ItemStack createDrop(boolean addenchants, boolean addeffects, boolean addlore){
-        ItemStack stack = new ItemStack(dropMaterial,1);
-        if(addenchants) stack.addUnsafeEnchantment(dropEnchantment, 1);
-        ItemMeta meta = stack.getItemMeta();
-        
-        meta.setDisplayName(ChatColor.RESET + "" + ChatColor.YELLOW + dropName);
-        if(addlore){
-            meta.setLore(getLore());
-        }
-        if(addenchants) meta.addItemFlags(ItemFlag.HIDE_ENCHANTS);
-        if(dropMaterial==Material.POTION){
-            meta.addItemFlags(ItemFlag.HIDE_ADDITIONAL_TOOLTIP);
-            PotionMeta potMeta = (PotionMeta) meta;
-            potMeta.setColor(Color.BLUE);
-            if(addeffects){
-                potMeta.addCustomEffect(new PotionEffect(PotionEffectType.GLOWING,300*TPS,1),true);
-                potMeta.addCustomEffect(new PotionEffect(PotionEffectType.SATURATION,3*TPS,10),false);
-            }
-        }
-        
-        stack.setItemMeta(meta);
-        return stack;
-    }
-    
-    private static String camelCase(String str)
-    {
-        StringBuilder builder = new StringBuilder(str);
-        // Flag to keep track if last visited character is a 
-        // white space or not
-        boolean isLastSpace = true;
-
-        // Iterate String from beginning to end.
-        for(int i = 0; i < builder.length(); i++)
-        {
-                char ch = builder.charAt(i);
-
-                if(isLastSpace && ch >= 'a' && ch <='z')
-                {
-                        // Character need to be converted to uppercase
-                        builder.setCharAt(i, (char)(ch + ('A' - 'a') ));
-                        isLastSpace = false;
-                }else if (ch != ' ')
-                        isLastSpace = false;
-                else
-                        isLastSpace = true;
-        }
-
-        return builder.toString();
+        return getDefinition().createDrop(addenchants, addeffects, addlore);
     }
 }
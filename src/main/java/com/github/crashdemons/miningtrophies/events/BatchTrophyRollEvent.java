@@ -0,0 +1,162 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.events;
+
+import com.github.crashdemons.miningtrophies.RollSource;
+import com.github.crashdemons.miningtrophies.TrophyType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.player.PlayerEvent;
+
+/**
+ * Event created by MiningTrophies when many blocks broken by one player in a single action are rolled together, such as by vein-mining plugins.
+ * This event replaces the TrophyRollEvent of each block: for each trophy type, it lists the number of blocks rolled, the effective droprate
+ * and the number of successful rolls, which may be changed by listeners. Cancelling the event drops no trophies.
+ * @author crash
+ */
+public class BatchTrophyRollEvent extends PlayerEvent implements Cancellable {
+    private static final HandlerList handlers = new HandlerList();
+
+    private final List<Block> blocks;
+    private final int[] attempts;
+    private final double[] effectiveDropRates;
+    private final int[] successes;
+    private final boolean minerAlwaysRewarded;
+    private final RollSource rollSource;
+    private boolean cancelled = false;
+
+    /**
+     * Creates the batch roll event
+     * @param miner the player that broke the blocks
+     * @param blocks the blocks broken
+     * @param attempts the number of blocks rolled for each trophy type, indexed by ordinal
+     * @param effectiveDropRates the effective droprate of each trophy type, indexed by ordinal
+     * @param successes the number of successful rolls for each trophy type, indexed by ordinal. This array is updated by setSuccesses.
+     * @param minerAlwaysRewarded whether the miner has the always-rewarded permission
+     * @param rollSource the source of the random values used for the rolls
+     */
+    public BatchTrophyRollEvent(Player miner, List<Block> blocks, int[] attempts, double[] effectiveDropRates, int[] successes, boolean minerAlwaysRewarded, RollSource rollSource) {
+        super(miner);
+        this.blocks = Collections.unmodifiableList(blocks);
+        this.attempts = attempts;
+        this.effectiveDropRates = effectiveDropRates;
+        this.successes = successes;
+        this.minerAlwaysRewarded = minerAlwaysRewarded;
+        this.rollSource = rollSource;
+    }
+
+    /**
+     * Gets the blocks broken in the action
+     * @return an unmodifiable list of the blocks
+     */
+    public List<Block> getBlocks(){
+        return blocks;
+    }
+
+    /**
+     * Gets the trophy types that were rolled for
+     * @return the trophy types with at least one block rolled
+     */
+    public List<TrophyType> getTrophyTypes(){
+        ArrayList<TrophyType> types = new ArrayList<>();
+        for(TrophyType type : TrophyType.values()){
+            if(attempts[type.ordinal()]>0) types.add(type);
+        }
+        return types;
+    }
+
+    /**
+     * Gets the number of blocks rolled for a trophy type
+     * @param type the trophy type
+     * @return the number of rolls
+     */
+    public int getAttempts(TrophyType type){
+        return attempts[type.ordinal()];
+    }
+
+    /**
+     * Gets the effective droprate used for each roll of a trophy type
+     * @param type the trophy type
+     * @return the droprate as a fraction (0.01 = 1%)
+     */
+    public double getEffectiveDropRate(TrophyType type){
+        return effectiveDropRates[type.ordinal()];
+    }
+
+    /**
+     * Gets the number of successful rolls for a trophy type, which is the number of trophies that will drop
+     * @param type the trophy type
+     * @return the number of successes
+     */
+    public int getSuccesses(TrophyType type){
+        return successes[type.ordinal()];
+    }
+
+    /**
+     * Sets the number of successful rolls for a trophy type
+     * @param type the trophy type
+     * @param count the number of successes, limited to between 0 and the number of rolls.
+     */
+    public void setSuccesses(TrophyType type, int count){
+        successes[type.ordinal()] = Math.max(0, Math.min(count, attempts[type.ordinal()]));
+    }
+
+    /**
+     * Whether the miner has the always-rewarded permission
+     * @return whether the miner is always rewarded
+     */
+    public boolean getMinerAlwaysRewarded(){
+        return minerAlwaysRewarded;
+    }
+
+    /**
+     * Gets the source of random values used for the rolls, so listeners can re-roll consistently.
+     * @return the roll source
+     */
+    public RollSource getRollSource(){
+        return rollSource;
+    }
+
+    /**
+     * Set whether the event should be cancelled.
+     * @param state the state to change the cancellation to.
+     */
+    @Override
+    public void setCancelled(boolean state){
+        cancelled=state;
+    }
+
+    /**
+     * Check whether the event is cancelled.
+     * @return the cancellation state of the event.
+     */
+    @Override
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * Get a list of handlers for the event type
+     * @return the list of handlers
+     */
+    @Override
+    public HandlerList getHandlers(){
+        return handlers;
+    }
+
+    /**
+     * Get a list of handlers for the event type
+     * @return the list of handlers
+     */
+    public static HandlerList getHandlerList(){
+        return handlers;
+    }
+}
@@ -5,10 +5,17 @@
  */
 package com.github.crashdemons.miningtrophies.events;
 
+import com.github.crashdemons.miningtrophies.RollSource;
+import com.github.crashdemons.miningtrophies.ThreadLocalRollSource;
+import com.github.crashdemons.miningtrophies.modifiers.CompiledModifierChain;
 import com.github.crashdemons.miningtrophies.modifiers.DropRateModifier;
 import com.github.crashdemons.miningtrophies.modifiers.DropRateModifierType;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
@@ -25,7 +32,10 @@ import org.bukkit.plugin.Plugin;
 public class TrophyRollEvent extends BlockEvent {
     private static final HandlerList handlers = new HandlerList();
     
-    private final LinkedHashMap<String, DropRateModifier> modifiers = new LinkedHashMap<>();
+    private LinkedHashMap<String, DropRateModifier> modifiers = null;//created when the first modifier is added
+    private CompiledModifierChain compiledModifiers = null;//the modifiers folded into one function, appended to as modifiers are added
+    private boolean compiledModifiersStale = false;//set when modifiers were replaced or removed
+    private ModifierView modifierView = null;//the map returned by getModifiers, which keeps the compiled chain up to date
 
     private final Entity miner;
     private final Block target;
@@ -40,6 +50,8 @@ public class TrophyRollEvent extends BlockEvent {
     private double effectiveDropRate;
     
     private boolean dropSuccess;
+    
+    private final RollSource rollSource;
 
     /**
      * Creates the Trophy dropchance event for MiningTrophies.
@@ -61,6 +73,7 @@ public class TrophyRollEvent extends BlockEvent {
         this.miner=miner;
         this.target=target;
         this.material=block.getType();
+        this.rollSource=ThreadLocalRollSource.INSTANCE;
     }
     
     
@@ -87,6 +100,7 @@ public class TrophyRollEvent extends BlockEvent {
         this.miner=miner;
         this.target=target;
         this.material=block.getType();
+        this.rollSource=ThreadLocalRollSource.INSTANCE;
     }
     
     /**
@@ -116,6 +130,34 @@ public class TrophyRollEvent extends BlockEvent {
         this.miner=miner;
         this.target=target;
         this.material=block.getType();
+        this.rollSource=ThreadLocalRollSource.INSTANCE;
+    }
+    
+    /**
+     * Creates the Trophy dropchance event for MiningTrophies.
+     * @param miner the Entity mining the block
+     * @param target the Block being mined
+     * @param minerAlwaysRewarded whether the miner has the always-rewarded permission
+     * @param originalDropRoll the randomized PRNG double droproll value inclusively between 0 to 1.
+     * @param effectiveDropRoll the modified droproll value after permission logic was applied (alwaysrewarded sets to 0)
+     * @param originalDropRate the configured droprate of the target as a fraction (0.01 = 1%)
+     * @param effectiveDropRate the effective droprate of the target as a fraction (0.01 = 1%), as modified by fortune.
+     * @param dropSuccess whether the droproll was determined to be initially a successful roll.
+     * @param rollSource the source of random values that produced the droproll
+     */
+    public TrophyRollEvent(Entity miner, Block target, boolean minerAlwaysRewarded, double originalDropRoll, double effectiveDropRoll, double originalDropRate, double effectiveDropRate, boolean dropSuccess, RollSource rollSource) {
+        super(target);
+        this.originalDropRate=originalDropRate;
+        this.effectiveDropRate=effectiveDropRate;
+        this.dropSuccess=dropSuccess;
+        this.effectiveDropRoll=effectiveDropRoll;
+        this.originalDropRoll=originalDropRoll;
+        this.minerAlwaysRewarded=minerAlwaysRewarded;
+        
+        this.miner=miner;
+        this.target=target;
+        this.material=block.getType();
+        this.rollSource=rollSource;
     }
     
     /**
@@ -169,6 +211,15 @@ public class TrophyRollEvent extends BlockEvent {
         return originalDropRoll;
     }
     
+    /**
+     * Gets the source of random values that produced the original droproll.
+     * Listeners that need their own random values should draw them from this source so that seeded sessions remain reproducible.
+     * @return the roll source
+     */
+    public RollSource getRollSource() {
+        return rollSource;
+    }
+    
     /**
      * Gets the effective drop roll value after modification by MiningTrophies.
      * The droproll will normally be reflected by the original random droproll, except if the miner always is rewarded, then this may be 0.
@@ -226,14 +277,154 @@ public class TrophyRollEvent extends BlockEvent {
 
     /**
      * Gets the list of modifiers to the effective droprate. This map will be in
-     * order that the modifiers are applied.
+     * order that the modifiers are applied. Changes made to the map are
+     * considered by later calls to applyModifiers.
      *
      * @since 5.2.16-SNAPSHOT
      * @return map containing the droprate modifiers by name.
      */
     public Map<String, DropRateModifier> getModifiers() {
+        if (modifierView == null) {
+            modifierView = new ModifierView();
+        }
+        return modifierView;
+    }
+
+    /**
+     * A view of the modifiers that marks the compiled chain as stale whenever a modifier is replaced or removed through it
+     */
+    private final class ModifierView extends AbstractMap<String, DropRateModifier> {
+        private final Set<Map.Entry<String, DropRateModifier>> entries = new AbstractSet<Map.Entry<String, DropRateModifier>>() {
+            @Override
+            public Iterator<Map.Entry<String, DropRateModifier>> iterator() {
+                final Iterator<Map.Entry<String, DropRateModifier>> it = modifierMap().entrySet().iterator();
+                return new Iterator<Map.Entry<String, DropRateModifier>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, DropRateModifier> next() {
+                        return new ModifierEntry(it.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        it.remove();
+                        compiledModifiersStale = true;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return modifierMap().size();
+            }
+        };
+
+        @Override
+        public Set<Map.Entry<String, DropRateModifier>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public int size() {
+            return modifierMap().size();
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return modifierMap().containsKey(key);
+        }
+
+        @Override
+        public DropRateModifier get(final Object key) {
+            return modifierMap().get(key);
+        }
+
+        @Override
+        public DropRateModifier put(final String key, final DropRateModifier value) {
+            return putModifier(key, value);
+        }
+
+        @Override
+        public DropRateModifier remove(final Object key) {
+            DropRateModifier previous = modifierMap().remove(key);
+            if (previous != null) {
+                compiledModifiersStale = true;
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            if (!modifierMap().isEmpty()) {
+                modifierMap().clear();
+                compiledModifiersStale = true;
+            }
+        }
+    }
+
+    /**
+     * An entry of the modifier view, which marks the compiled chain as stale when its modifier is replaced
+     */
+    private final class ModifierEntry implements Map.Entry<String, DropRateModifier> {
+        private final Map.Entry<String, DropRateModifier> entry;
+
+        private ModifierEntry(final Map.Entry<String, DropRateModifier> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public DropRateModifier getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public DropRateModifier setValue(final DropRateModifier value) {
+            compiledModifiersStale = true;
+            return entry.setValue(value);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return entry.equals(other);
+        }
+
+        @Override
+        public int hashCode() {
+            return entry.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return entry.toString();
+        }
+    }
+    
+    private LinkedHashMap<String, DropRateModifier> modifierMap() {
+        if (modifiers == null) {
+            modifiers = new LinkedHashMap<>();
+            compiledModifiers = new CompiledModifierChain();
+        }
         return modifiers;
     }
+    
+    private DropRateModifier putModifier(final String modifierName, final DropRateModifier value) {
+        DropRateModifier previous = modifierMap().put(modifierName, value);
+        if (previous == null && !compiledModifiersStale) {
+            compiledModifiers.append(value);//new entries are always last in the map
+        } else {
+            compiledModifiersStale = true;//an existing entry changed in the middle of the chain
+        }
+        return previous;
+    }
 
     /**
      * Re-apply the current effective droproll and effective droprate values to
@@ -257,14 +448,22 @@ public class TrophyRollEvent extends BlockEvent {
      * the effective droprate. This method will discard the current effective
      * droprate, if you want to retain the original values, you should copy them
      * before calling this method. Success is not updated by this method.
+     * 
+     * Modifiers are kept folded into a single compiled function, so this takes
+     * constant time unless modifiers were replaced since the last call.
      *
      * @since 5.2.16-SNAPSHOT
      */
     public void applyModifiers() {
-        effectiveDropRate = originalDropRate;
-        for (DropRateModifier modifier : modifiers.values()) {
-            effectiveDropRate = modifier.apply(effectiveDropRate);
+        if (modifiers == null) {
+            effectiveDropRate = originalDropRate;
+            return;
         }
+        if (compiledModifiersStale) {
+            compiledModifiers = CompiledModifierChain.compile(modifiers.values());
+            compiledModifiersStale = false;
+        }
+        effectiveDropRate = compiledModifiers.apply(originalDropRate);
     }
 
     /**
@@ -311,6 +510,9 @@ public class TrophyRollEvent extends BlockEvent {
      * @return the value of the modifier, or null if it is not present.
      */
     public DropRateModifier getModifier(final String modifierName) {
+        if (modifiers == null) {
+            return null;
+        }
         return modifiers.get(modifierName);
     }
 
@@ -327,7 +529,7 @@ public class TrophyRollEvent extends BlockEvent {
      * @param value the value of the modifier to set
      */
     public void setModifier(final String modifierName, final DropRateModifier value) {
-        modifiers.put(modifierName, value);
+        putModifier(modifierName, value);
     }
 
     /**
@@ -342,8 +544,10 @@ public class TrophyRollEvent extends BlockEvent {
      * @param entries the modifiers to set
      */
     public void setModifiers(final Map<String, DropRateModifier> entries) {
-        modifiers.clear();
-        modifiers.putAll(entries);
+        LinkedHashMap<String, DropRateModifier> map = modifierMap();
+        map.clear();
+        map.putAll(entries);
+        compiledModifiersStale = true;
     }
 
     /**
@@ -373,7 +577,7 @@ public class TrophyRollEvent extends BlockEvent {
      */
     public void setCustomModifier(final Plugin yourPlugin, final String modifierName, final DropRateModifier modifierValue) {
         String customModifierName = getCustomModifierName(yourPlugin.getName(), modifierName);
-        modifiers.put(customModifierName, modifierValue);
+        putModifier(customModifierName, modifierValue);
     }
     /**
      * Add or change a note about your custom modifier to the trophy-roll event.
@@ -390,7 +594,7 @@ public class TrophyRollEvent extends BlockEvent {
      */
     public void setCustomModifier(final Plugin yourPlugin, final String modifierName, final DropRateModifier modifierValue, boolean recalculateSuccess) {
         String customModifierName = getCustomModifierName(yourPlugin.getName(), modifierName);
-        modifiers.put(customModifierName, modifierValue);
+        putModifier(customModifierName, modifierValue);
         if(recalculateSuccess) recalculateSuccess();
     }
 
@@ -0,0 +1,101 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.metrics;
+
+/**
+ * The reasons an event listener finished handling an event, counted per listener.
+ * @author crash
+ */
+public enum ExitReason {
+    /**
+     * The event was fired by MiningTrophies itself
+     */
+    SIMULATED_BREAK,
+    /**
+     * The event has no block, player or item to handle
+     */
+    MISSING_TARGET,
+    /**
+     * The block is not a trophy block
+     */
+    NOT_TROPHY_BLOCK,
+    /**
+     * The event was cancelled by another plugin
+     */
+    CANCELLED,
+    /**
+     * The droprate of the trophy is 0
+     */
+    TROPHY_DISABLED,
+    /**
+     * The block was placed by a player
+     */
+    PLACED_BLOCK,
+    /**
+     * The player is in creative mode
+     */
+    CREATIVE,
+    /**
+     * The tool was shears or had silk touch
+     */
+    TOOL_NOT_PERMITTED,
+    /**
+     * The player does not have permission to be rewarded
+     */
+    NO_PERMISSION,
+    /**
+     * The drop roll failed
+     */
+    ROLL_FAILED,
+    /**
+     * A protection or anti-cheat plugin vetoed the trophy
+     */
+    PROTECTION_VETO,
+    /**
+     * Another plugin cancelled the trophy drop event
+     */
+    DROP_CANCELLED,
+    /**
+     * A trophy was dropped
+     */
+    DROPPED,
+    /**
+     * The item was ruled out as a trophy by its material alone
+     */
+    PREFILTERED,
+    /**
+     * The item is not a trophy
+     */
+    NOT_TROPHY_ITEM,
+    /**
+     * A dropped trophy item was replaced with a fresh trophy
+     */
+    REPAIRED,
+    /**
+     * Placing a trophy was prevented
+     */
+    PLACEMENT_BLOCKED,
+    /**
+     * The inventory click was not on a grindstone result
+     */
+    NOT_GRINDSTONE,
+    /**
+     * The trophy properties were removed from an item in a grindstone
+     */
+    GRINDSTONE_CLEARED,
+    /**
+     * Handling was stopped by an error
+     */
+    ERROR;
+
+    /**
+     * Gets the name of the reason as used in metrics output
+     * @return the lower-case name
+     */
+    public String getLabel(){
+        return name().toLowerCase();
+    }
+}
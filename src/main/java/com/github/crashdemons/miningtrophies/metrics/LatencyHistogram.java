@@ -0,0 +1,110 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of nanosecond latencies with logarithmic buckets.
+ *
+ * Like HdrHistogram, each power of two is split into a fixed number of linear sub-buckets,
+ * so recorded values are kept with a relative error of at most 1/8 (12.5%) over the range from 1ns to about 18 minutes.
+ * Recording is a few bit operations and one atomic increment, and never allocates.
+ * Reads may be made from any thread while values are being recorded.
+ * @author crash
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40;//values of 2^40ns or more share the last bucket
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKETS + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucketIndex(long value){
+        if(value < SUB_BUCKETS) return value < 0 ? 0 : (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if(magnitude >= MAX_MAGNITUDE) return BUCKETS - 1;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index){
+        if(index < SUB_BUCKETS) return index;
+        if(index >= BUCKETS - 1) return Long.MAX_VALUE;
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long lower = ((long) (SUB_BUCKETS + subBucket)) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a latency
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos){
+        if(nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucketIndex(nanos));
+        sum.add(nanos);
+        long current = max.get();
+        while(nanos > current && !max.compareAndSet(current, nanos)){
+            current = max.get();
+        }
+    }
+
+    /**
+     * Gets the number of latencies recorded
+     * @return the count
+     */
+    public long getCount(){
+        long total = 0;
+        for(int i=0;i<BUCKETS;i++) total += counts.get(i);
+        return total;
+    }
+
+    /**
+     * Gets the sum of all latencies recorded
+     * @return the sum in nanoseconds
+     */
+    public long getSum(){
+        return sum.sum();
+    }
+
+    /**
+     * Gets the largest latency recorded
+     * @return the maximum in nanoseconds
+     */
+    public long getMax(){
+        return max.get();
+    }
+
+    /**
+     * Gets the latency below which a fraction of the recorded latencies fall, to within the bucket precision.
+     * @param quantile the fraction, between 0 and 1 (0.99 for the 99th percentile)
+     * @return the latency in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getValueAtQuantile(double quantile){
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for(int i=0;i<BUCKETS;i++){
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if(total==0) return 0;
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for(int i=0;i<BUCKETS;i++){
+            seen += snapshot[i];
+            if(seen >= target) return Math.min(bucketUpperBound(i), getMax());
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invocation counts, exit reasons and latencies of one event listener
+ * @author crash
+ */
+public final class ListenerMetrics {
+    private final String name;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder[] exits;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Constructs the metrics of a listener
+     * @param name the name of the listener as used in metrics output
+     */
+    public ListenerMetrics(String name){
+        this.name = name;
+        exits = new LongAdder[ExitReason.values().length];
+        for(int i=0;i<exits.length;i++) exits[i] = new LongAdder();
+    }
+
+    /**
+     * Records one invocation of the listener
+     * @param reason why the listener finished
+     * @param startNanos the System.nanoTime() when the listener started, or 0 if it was not timed
+     */
+    public void record(ExitReason reason, long startNanos){
+        invocations.increment();
+        exits[reason.ordinal()].increment();
+        if(startNanos!=0) latency.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the name of the listener
+     * @return the name
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Gets the number of times the listener was invoked
+     * @return the invocation count
+     */
+    public long getInvocations(){
+        return invocations.sum();
+    }
+
+    /**
+     * Gets the number of times the listener finished for a reason
+     * @param reason the exit reason
+     * @return the count
+     */
+    public long getExits(ExitReason reason){
+        return exits[reason.ordinal()].sum();
+    }
+
+    /**
+     * Gets the latencies of timed invocations
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency(){
+        return latency;
+    }
+}
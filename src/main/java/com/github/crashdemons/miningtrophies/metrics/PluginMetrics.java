@@ -0,0 +1,182 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics of the plugin's event listeners and other counters, which can be shown by /mt stats or written in the Prometheus text format.
+ *
+ * Recording only updates striped counters and a lock-free histogram, so metrics are cheap enough to leave on.
+ * Latencies are only measured while timing is enabled; invocation and exit reason counts are always kept.
+ * @author crash
+ */
+public final class PluginMetrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final ListenerMetrics blockBreak = new ListenerMetrics("block_break");
+    private final ListenerMetrics itemSpawn = new ListenerMetrics("item_spawn");
+    private final ListenerMetrics blockPlace = new ListenerMetrics("block_place");
+    private final ListenerMetrics grindstone = new ListenerMetrics("grindstone");
+    private final List<ListenerMetrics> listeners = Collections.unmodifiableList(new ArrayList<>(List.of(blockBreak, itemSpawn, blockPlace, grindstone)));
+    private final CopyOnWriteArrayList<Counter> counters = new CopyOnWriteArrayList<>();
+    private volatile boolean timingEnabled = true;
+
+    private static final class Counter {
+        final String name;
+        final String help;
+        final LongSupplier value;
+
+        Counter(String name, String help, LongSupplier value){
+            this.name = name;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Gets the metrics of the block break listener, which rolls for trophies
+     * @return the listener metrics
+     */
+    public ListenerMetrics getBlockBreak(){
+        return blockBreak;
+    }
+
+    /**
+     * Gets the metrics of the item spawn listener, which fixes dropped trophies
+     * @return the listener metrics
+     */
+    public ListenerMetrics getItemSpawn(){
+        return itemSpawn;
+    }
+
+    /**
+     * Gets the metrics of the block place listener, which prevents trophies being placed
+     * @return the listener metrics
+     */
+    public ListenerMetrics getBlockPlace(){
+        return blockPlace;
+    }
+
+    /**
+     * Gets the metrics of the grindstone listener, which removes trophy properties
+     * @return the listener metrics
+     */
+    public ListenerMetrics getGrindstone(){
+        return grindstone;
+    }
+
+    /**
+     * Gets the metrics of every listener
+     * @return an unmodifiable list of the listener metrics
+     */
+    public List<ListenerMetrics> getListeners(){
+        return listeners;
+    }
+
+    /**
+     * Sets whether listener latencies are measured
+     * @param enabled whether to measure latencies
+     */
+    public void setTimingEnabled(boolean enabled){
+        timingEnabled = enabled;
+    }
+
+    /**
+     * Checks whether listener latencies are measured
+     * @return whether latencies are measured
+     */
+    public boolean isTimingEnabled(){
+        return timingEnabled;
+    }
+
+    /**
+     * Gets the start time to pass to {@link ListenerMetrics#record(ExitReason, long)} when a listener starts
+     * @return the current System.nanoTime(), or 0 if timing is disabled
+     */
+    public long start(){
+        if(!timingEnabled) return 0;
+        long now = System.nanoTime();
+        return now==0 ? 1 : now;
+    }
+
+    /**
+     * Adds a counter to the metrics output. The value may be read from any thread.
+     * @param name the metric name, without the "miningtrophies_" prefix or "_total" suffix
+     * @param help a description of the counter
+     * @param value supplies the current value of the counter
+     */
+    public void registerCounter(String name, String help, LongSupplier value){
+        counters.add(new Counter(name, help, value));
+    }
+
+    /**
+     * Formats every metric in the Prometheus text exposition format
+     * @return the metrics text
+     */
+    public String toPrometheus(){
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP miningtrophies_listener_invocations_total Number of events handled by each listener.\n");
+        out.append("# TYPE miningtrophies_listener_invocations_total counter\n");
+        for(ListenerMetrics listener : listeners){
+            out.append("miningtrophies_listener_invocations_total{listener=\"").append(listener.getName()).append("\"} ").append(listener.getInvocations()).append('\n');
+        }
+        out.append("# HELP miningtrophies_listener_exits_total Number of events handled by each listener, by the reason handling finished.\n");
+        out.append("# TYPE miningtrophies_listener_exits_total counter\n");
+        for(ListenerMetrics listener : listeners){
+            for(ExitReason reason : ExitReason.values()){
+                long count = listener.getExits(reason);
+                if(count==0) continue;
+                out.append("miningtrophies_listener_exits_total{listener=\"").append(listener.getName()).append("\",reason=\"").append(reason.getLabel()).append("\"} ").append(count).append('\n');
+            }
+        }
+        out.append("# HELP miningtrophies_listener_latency_seconds Time spent handling each event.\n");
+        out.append("# TYPE miningtrophies_listener_latency_seconds summary\n");
+        for(ListenerMetrics listener : listeners){
+            LatencyHistogram latency = listener.getLatency();
+            String label = "listener=\""+listener.getName()+"\"";
+            for(double quantile : QUANTILES){
+                out.append("miningtrophies_listener_latency_seconds{").append(label).append(",quantile=\"").append(quantile).append("\"} ").append(seconds(latency.getValueAtQuantile(quantile))).append('\n');
+            }
+            out.append("miningtrophies_listener_latency_seconds_sum{").append(label).append("} ").append(seconds(latency.getSum())).append('\n');
+            out.append("miningtrophies_listener_latency_seconds_count{").append(label).append("} ").append(latency.getCount()).append('\n');
+        }
+        for(Counter counter : counters){
+            String name = "miningtrophies_"+counter.name+"_total";
+            out.append("# HELP ").append(name).append(' ').append(counter.help).append('\n');
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(counter.value.getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static double seconds(long nanos){
+        return nanos / 1e9;
+    }
+
+    /**
+     * Writes every metric to a file in the Prometheus text format, such as for the node exporter textfile collector.
+     * The file is replaced atomically, so it is never seen half-written.
+     * @param file the file to write
+     * @throws IOException if the file could not be written
+     */
+    public void writePrometheusFile(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(parent!=null) parent.mkdirs();
+        File temp = new File(file.getPath()+".tmp");
+        Files.write(temp.toPath(), toPrometheus().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
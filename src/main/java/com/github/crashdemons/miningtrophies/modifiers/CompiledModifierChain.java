@@ -0,0 +1,170 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.modifiers;
+
+import java.util.ArrayList;
+
+/**
+ * A sequence of droprate modifiers folded into a single affine function: droprate*scale+offset
+ *
+ * Since every modifier type is affine, applying any number of modifiers in order is equivalent to applying one compiled chain,
+ * and appending a modifier to the end of the chain only takes constant time.
+ * Results may differ from applying each modifier separately by floating-point rounding only.
+ *
+ * Subclasses of {@link DropRateModifier} may override {@link DropRateModifier#apply(double)}, so they are not folded:
+ * the chain keeps them in order and calls them between the folded runs of the other modifiers.
+ *
+ * @author crash
+ */
+public final class CompiledModifierChain {
+    private double scale = 1.0;
+    private double offset = 0.0;
+    private ArrayList<Step> steps = null;//subclass modifiers, each applied after the folded modifiers before it
+
+    /**
+     * A modifier that can't be folded, with the folded modifiers that come before it
+     */
+    private static final class Step {
+        private final double scale;
+        private final double offset;
+        private final DropRateModifier modifier;
+
+        private Step(final double scale, final double offset, final DropRateModifier modifier) {
+            this.scale = scale;
+            this.offset = offset;
+            this.modifier = modifier;
+        }
+    }
+
+    /**
+     * Constructs an empty chain, which has no effect on the droprate.
+     */
+    public CompiledModifierChain() {
+    }
+
+    /**
+     * Constructs a copy of another chain
+     *
+     * @param other the chain to copy
+     */
+    public CompiledModifierChain(final CompiledModifierChain other) {
+        this.scale = other.scale;
+        this.offset = other.offset;
+        if (other.steps != null) {
+            this.steps = new ArrayList<>(other.steps);
+        }
+    }
+
+    /**
+     * Compiles a sequence of modifiers into a chain
+     *
+     * @param modifiers the modifiers, in the order they are applied
+     * @return the compiled chain
+     */
+    public static CompiledModifierChain compile(final Iterable<DropRateModifier> modifiers) {
+        CompiledModifierChain chain = new CompiledModifierChain();
+        for (DropRateModifier modifier : modifiers) {
+            chain.append(modifier);
+        }
+        return chain;
+    }
+
+    /**
+     * Appends a modifier so that it is applied after all modifiers already in the chain.
+     *
+     * @param modifier the modifier to append
+     */
+    public void append(final DropRateModifier modifier) {
+        if (modifier.getClass() == DropRateModifier.class) {
+            append(modifier.getScale(), modifier.getOffset());
+        } else {
+            appendStep(new Step(scale, offset, modifier));
+        }
+    }
+
+    /**
+     * Appends another chain so that it is applied after all modifiers already in this chain.
+     *
+     * @param other the chain to append
+     */
+    public void append(final CompiledModifierChain other) {
+        if (other.steps != null) {
+            for (Step step : other.steps) {
+                append(step.scale, step.offset);
+                appendStep(new Step(scale, offset, step.modifier));
+            }
+        }
+        append(other.scale, other.offset);
+    }
+
+    private void append(final double nextScale, final double nextOffset) {
+        offset = nextScale * offset + nextOffset;
+        scale = nextScale * scale;
+    }
+
+    private void appendStep(final Step step) {
+        if (steps == null) {
+            steps = new ArrayList<>();
+        }
+        steps.add(step);
+        scale = 1.0;
+        offset = 0.0;
+    }
+
+    /**
+     * Removes all modifiers from the chain
+     */
+    public void reset() {
+        scale = 1.0;
+        offset = 0.0;
+        steps = null;
+    }
+
+    /**
+     * Checks whether the whole chain is folded into one affine function, because it contains no subclasses of DropRateModifier.
+     *
+     * @return true if {@link #getScale()} and {@link #getOffset()} describe the whole chain
+     */
+    public boolean isAffine() {
+        return steps == null;
+    }
+
+    /**
+     * Gets the combined factor that the chain multiplies the droprate by.
+     * If the chain is not {@link #isAffine() affine}, this only covers the modifiers after the last subclass modifier.
+     *
+     * @return the scale of the chain
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Gets the combined value that the chain adds to the droprate after scaling it.
+     * If the chain is not {@link #isAffine() affine}, this only covers the modifiers after the last subclass modifier.
+     *
+     * @return the offset of the chain
+     */
+    public double getOffset() {
+        return offset;
+    }
+
+    /**
+     * Apply every modifier of the chain to the droprate value
+     *
+     * @param droprate a droprate between 0 (0% chance) and 1.0 (100% chance).
+     * @return the effective droprate after modification
+     */
+    public double apply(final double droprate) {
+        double result = droprate;
+        if (steps != null) {
+            for (Step step : steps) {
+                result = step.modifier.apply(result * step.scale + step.offset);
+            }
+        }
+        return result * scale + offset;
+    }
+}
@@ -8,6 +8,8 @@ package com.github.crashdemons.miningtrophies.modifiers;
 /**
  * A modifier for the droprate including type and value information
  *
+ * Subclasses may override {@link #apply(double)}; compiled chains call such modifiers instead of folding their type and value.
+ *
  * @since 5.2.16-SNAPSHOT
  * @author crashdemons (crashenator at gmail.com)
  */
@@ -107,6 +109,53 @@ public class DropRateModifier {
         return null;
     }
 
+    /**
+     * Gets the factor that this modifier multiplies the droprate by.
+     * Every modifier type is an affine function of the droprate: droprate*scale+offset
+     *
+     * @return the scale of the modifier
+     * @see #getOffset()
+     */
+    public double getScale() {
+        switch (type) {
+            case MULTIPLY:
+                return value;
+            case ADD_MULTIPLE:
+                return 1.0 + value;
+            case ADD_MULTIPLE_PER_LEVEL:
+                return 1.0 + value * level;
+            case ADD_CONSTANT:
+            case NO_EFFECT:
+                return 1.0;
+            case SET_CONSTANT:
+                return 0.0;
+            default:
+                throw new IllegalArgumentException("An unsupported droprate modifier type was detected.");
+        }
+    }
+
+    /**
+     * Gets the value that this modifier adds to the droprate after scaling it.
+     * Every modifier type is an affine function of the droprate: droprate*scale+offset
+     *
+     * @return the offset of the modifier
+     * @see #getScale()
+     */
+    public double getOffset() {
+        switch (type) {
+            case ADD_CONSTANT:
+            case SET_CONSTANT:
+                return value;
+            case MULTIPLY:
+            case ADD_MULTIPLE:
+            case ADD_MULTIPLE_PER_LEVEL:
+            case NO_EFFECT:
+                return 0.0;
+            default:
+                throw new IllegalArgumentException("An unsupported droprate modifier type was detected.");
+        }
+    }
+
     /**
      * Apply the droprate modifier to the droprate value
      *
@@ -0,0 +1,330 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.modifiers;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.block.Block;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * The built-in server-wide droprate modifiers: per-world, per-biome, Y-level
+ * band and time-of-day multipliers.
+ *
+ * Rules are read from the "modifiers" config section once per configuration
+ * load and precomputed into lookup tables, so evaluating the pipeline for a
+ * block only takes a few array reads. Each kind of rule is contributed to
+ * TrophyRollEvent as a named MULTIPLY modifier ("world", "biome", "depth" and
+ * "time").
+ *
+ * @author crash
+ */
+public final class DropRateModifierPipeline {
+    /**
+     * The name of the modifier contributed by per-world rules
+     */
+    public static final String WORLD = "world";
+    /**
+     * The name of the modifier contributed by per-biome rules
+     */
+    public static final String BIOME = "biome";
+    /**
+     * The name of the modifier contributed by Y-level band rules
+     */
+    public static final String DEPTH = "depth";
+    /**
+     * The name of the modifier contributed by time-of-day rules
+     */
+    public static final String TIME = "time";
+
+    private static final int DEPTH_LIMIT = 4096;
+    private static final int TICKS_PER_DAY = 24000;
+    private static final int TICKS_PER_TIME_BUCKET = 100;
+
+    private static final DropRateModifierPipeline EMPTY = new DropRateModifierPipeline();
+
+    private final HashMap<String, Double> worldFactorsByName = new HashMap<>();
+    private final ConcurrentHashMap<UUID, Double> worldFactors = new ConcurrentHashMap<>();//resolved from names the first time a world is seen, by any region thread
+    private double[] biomeFactors = null;//indexed by Biome ordinal
+    private double[] depthFactors = null;//indexed by y-depthMin
+    private int depthMin = 0;
+    private double[] timeFactors = null;//indexed by world time bucket
+    private final boolean empty;
+
+    private DropRateModifierPipeline() {
+        this.empty = true;
+    }
+
+    private DropRateModifierPipeline(final ConfigurationSection config) {
+        loadWorlds(config.getConfigurationSection("worlds"));
+        loadBiomes(config.getConfigurationSection("biomes"));
+        loadDepthBands(config.getMapList("depth"));
+        loadTimeWindows(config.getMapList("time"));
+        this.empty = worldFactorsByName.isEmpty() && worldFactors.isEmpty() && biomeFactors == null && depthFactors == null && timeFactors == null;
+    }
+
+    /**
+     * Builds the pipeline from the "modifiers" config section
+     *
+     * @param config the modifiers section, or null if it is not configured.
+     * @return the pipeline
+     */
+    public static DropRateModifierPipeline fromConfig(final ConfigurationSection config) {
+        if (config == null) {
+            return EMPTY;
+        }
+        DropRateModifierPipeline pipeline = new DropRateModifierPipeline(config);
+        return pipeline.empty ? EMPTY : pipeline;
+    }
+
+    /**
+     * Gets a pipeline that has no effect on droprates
+     *
+     * @return the empty pipeline
+     */
+    public static DropRateModifierPipeline empty() {
+        return EMPTY;
+    }
+
+    private void loadWorlds(final ConfigurationSection worlds) {
+        if (worlds == null) {
+            return;
+        }
+        for (String key : worlds.getKeys(false)) {
+            double factor = worlds.getDouble(key, 1.0);
+            try {
+                worldFactors.put(UUID.fromString(key), factor);
+            } catch (IllegalArgumentException e) {
+                worldFactorsByName.put(key, factor);
+            }
+        }
+    }
+
+    private void loadBiomes(final ConfigurationSection biomes) {
+        if (biomes == null) {
+            return;
+        }
+        HashMap<NamespacedKey, Double> factors = new HashMap<>();
+        for (String key : biomes.getKeys(false)) {
+            NamespacedKey biomeKey = NamespacedKey.fromString(key.toLowerCase());
+            if (biomeKey != null) {
+                factors.put(biomeKey, biomes.getDouble(key, 1.0));
+            }
+        }
+        if (factors.isEmpty()) {
+            return;
+        }
+        Biome[] values = Biome.values();
+        biomeFactors = new double[values.length];
+        for (Biome biome : values) {
+            Double factor = factors.get(biome.getKey());
+            biomeFactors[biome.ordinal()] = factor == null ? 1.0 : factor;
+        }
+    }
+
+    private static int getInt(final Map<?, ?> map, final String key, final int def) {
+        Object value = map.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : def;
+    }
+
+    private static double getDouble(final Map<?, ?> map, final String key, final double def) {
+        Object value = map.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : def;
+    }
+
+    private void loadDepthBands(final List<Map<?, ?>> bands) {
+        if (bands == null || bands.isEmpty()) {
+            return;
+        }
+        int min = DEPTH_LIMIT;
+        int max = -DEPTH_LIMIT;
+        for (Map<?, ?> band : bands) {
+            min = Math.min(min, Math.max(-DEPTH_LIMIT, getInt(band, "min", -DEPTH_LIMIT)));
+            max = Math.max(max, Math.min(DEPTH_LIMIT, getInt(band, "max", DEPTH_LIMIT)));
+        }
+        if (max < min) {
+            return;
+        }
+        depthMin = min;
+        depthFactors = new double[max - min + 1];
+        Arrays.fill(depthFactors, 1.0);
+        for (Map<?, ?> band : bands) {
+            int bandMin = Math.max(min, getInt(band, "min", -DEPTH_LIMIT));
+            int bandMax = Math.min(max, getInt(band, "max", DEPTH_LIMIT));
+            double factor = getDouble(band, "factor", 1.0);
+            for (int y = bandMin; y <= bandMax; y++) {
+                depthFactors[y - min] *= factor;//overlapping bands stack
+            }
+        }
+    }
+
+    private void loadTimeWindows(final List<Map<?, ?>> windows) {
+        if (windows == null || windows.isEmpty()) {
+            return;
+        }
+        int buckets = TICKS_PER_DAY / TICKS_PER_TIME_BUCKET;
+        timeFactors = new double[buckets];
+        Arrays.fill(timeFactors, 1.0);
+        for (Map<?, ?> window : windows) {
+            int from = Math.floorMod(getInt(window, "from", 0), TICKS_PER_DAY) / TICKS_PER_TIME_BUCKET;
+            int to = Math.floorMod(getInt(window, "to", TICKS_PER_DAY - 1), TICKS_PER_DAY) / TICKS_PER_TIME_BUCKET;
+            double factor = getDouble(window, "factor", 1.0);
+            for (int bucket = from; ; bucket = (bucket + 1) % buckets) {//windows may wrap around midnight
+                timeFactors[bucket] *= factor;
+                if (bucket == to) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the pipeline has any rules at all
+     *
+     * @return true if the pipeline never changes the droprate
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Gets the droprate multiplier for a world
+     *
+     * @param world the world
+     * @return the multiplier, or 1.0 if no rule applies
+     */
+    public double getWorldFactor(final World world) {
+        if (world == null || (worldFactors.isEmpty() && worldFactorsByName.isEmpty())) {
+            return 1.0;
+        }
+        UUID id = world.getUID();
+        Double factor = worldFactors.get(id);
+        if (factor == null) {
+            factor = worldFactorsByName.getOrDefault(world.getName(), 1.0);
+            worldFactors.put(id, factor);
+        }
+        return factor;
+    }
+
+    /**
+     * Gets the droprate multiplier for a world by name, ignoring rules for world UUIDs.
+     * Used when there is no loaded world, such as by the drop simulator.
+     *
+     * @param worldName the name of the world
+     * @return the multiplier, or 1.0 if no rule applies
+     */
+    public double getWorldFactor(final String worldName) {
+        if (worldName == null) {
+            return 1.0;
+        }
+        return worldFactorsByName.getOrDefault(worldName, 1.0);
+    }
+
+    /**
+     * Gets the droprate multiplier for a biome
+     *
+     * @param biome the biome
+     * @return the multiplier, or 1.0 if no rule applies
+     */
+    public double getBiomeFactor(final Biome biome) {
+        if (biomeFactors == null || biome == null) {
+            return 1.0;
+        }
+        return biomeFactors[biome.ordinal()];
+    }
+
+    /**
+     * Gets the droprate multiplier for a Y-level
+     *
+     * @param y the block Y-level
+     * @return the multiplier, or 1.0 if no rule applies
+     */
+    public double getDepthFactor(final int y) {
+        if (depthFactors == null) {
+            return 1.0;
+        }
+        int index = y - depthMin;
+        if (index < 0 || index >= depthFactors.length) {
+            return 1.0;
+        }
+        return depthFactors[index];
+    }
+
+    /**
+     * Gets the droprate multiplier for a time of day
+     *
+     * @param time the world time in ticks
+     * @return the multiplier, or 1.0 if no rule applies
+     */
+    public double getTimeFactor(final long time) {
+        if (timeFactors == null) {
+            return 1.0;
+        }
+        return timeFactors[(int) (Math.floorMod(time, (long) TICKS_PER_DAY) / TICKS_PER_TIME_BUCKET)];
+    }
+
+    /**
+     * Gets the combined droprate multiplier of every rule for a block
+     *
+     * @param block the block being mined
+     * @return the multiplier, or 1.0 if no rule applies
+     */
+    public double getFactor(final Block block) {
+        if (empty) {
+            return 1.0;
+        }
+        World world = block.getWorld();
+        double factor = getWorldFactor(world);
+        if (biomeFactors != null) {
+            factor *= getBiomeFactor(block.getBiome());
+        }
+        if (depthFactors != null) {
+            factor *= getDepthFactor(block.getY());
+        }
+        if (timeFactors != null && world != null) {
+            factor *= getTimeFactor(world.getTime());
+        }
+        return factor;
+    }
+
+    /**
+     * Contributes a named MULTIPLY modifier for each kind of rule that applies
+     * to a block.
+     *
+     * @param block the block being mined
+     * @param consumer receives the name and modifier of each rule, such as TrophyRollEvent::setModifier
+     */
+    public void addModifiers(final Block block, final BiConsumer<String, DropRateModifier> consumer) {
+        if (empty) {
+            return;
+        }
+        World world = block.getWorld();
+        addModifier(consumer, WORLD, getWorldFactor(world));
+        if (biomeFactors != null) {
+            addModifier(consumer, BIOME, getBiomeFactor(block.getBiome()));
+        }
+        if (depthFactors != null) {
+            addModifier(consumer, DEPTH, getDepthFactor(block.getY()));
+        }
+        if (timeFactors != null && world != null) {
+            addModifier(consumer, TIME, getTimeFactor(world.getTime()));
+        }
+    }
+
+    private static void addModifier(final BiConsumer<String, DropRateModifier> consumer, final String name, final double factor) {
+        if (factor != 1.0) {
+            consumer.accept(name, new DropRateModifier(DropRateModifierType.MULTIPLY, factor));
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.simulator;
+
+import com.github.crashdemons.miningtrophies.SeededRollSource;
+import com.github.crashdemons.miningtrophies.TrophyRoll;
+import com.github.crashdemons.miningtrophies.TrophySettings;
+import com.github.crashdemons.miningtrophies.TrophyType;
+import com.github.crashdemons.miningtrophies.modifiers.DropRateModifierPipeline;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simulates players mining with a configuration, to estimate how many trophies they find and how long they go without one.
+ *
+ * Every block is rolled with the same {@link TrophyRoll} rules as a real block break: the tool check, fortunerate, the world, biome, depth and time modifiers
+ * and bad-luck protection. Each simulated player starts with no bad-luck progress and mines the profile's blocks every hour.
+ * Players are split between fork/join tasks, and each task rolls with its own {@link SeededRollSource} split from the seed,
+ * so the results for a seed are the same however many threads run them.
+ *
+ * The trophy types are independent of each other (bad-luck protection is counted per type), so a dry streak that is unbroken when a player stops mining
+ * is finished by rolling only blocks of that type. This keeps long streaks from being cut short by the end of the simulation.
+ * Streaks that are still unbroken after many times their expected length (which only happens if no tool or location can win) are counted as unfinished instead,
+ * and reported separately.
+ * @author crash
+ */
+public final class DropSimulator {
+    private static final long BREAKS_PER_TASK = 1L << 18;
+    private static final double STREAK_LIMIT_FACTOR = 64;//unbroken streaks are finished for up to this many times the longest expected streak
+    private static final long MAX_STREAK_LIMIT = 1L << 40;
+
+    private final TrophySettings settings;
+    private final SimulationProfile profile;
+    private final TrophyType[] types;//the types that can be won
+    private final double[] toolWeights;
+    private final int[] toolLooting;
+    private final boolean[] toolPermitted;
+    private final double[] locationWeights;
+    private final double[] locationFactors;
+    private final long[] streakLimits;//indexed by TrophyType ordinal, 0 if the type can never be won
+
+    /**
+     * Constructs a simulator
+     * @param settings the settings to simulate, as parsed from the plugin configuration
+     * @param profile how the simulated players mine
+     */
+    public DropSimulator(TrophySettings settings, SimulationProfile profile){
+        this.settings = settings;
+        this.profile = profile;
+        this.types = Arrays.stream(TrophyType.values())
+                .filter(type -> settings.getDropRate(type)!=0.0 && profile.getBlocksPerHour(type)>0)
+                .toArray(TrophyType[]::new);
+
+        List<SimulationProfile.ToolSample> tools = profile.getTools();
+        toolWeights = new double[tools.size()];
+        toolLooting = new int[tools.size()];
+        toolPermitted = new boolean[tools.size()];
+        for(int i=0;i<tools.size();i++){
+            SimulationProfile.ToolSample tool = tools.get(i);
+            toolWeights[i] = tool.getWeight();
+            toolLooting[i] = tool.getLootingLevel();
+            toolPermitted[i] = TrophyRoll.isPermittedTool(tool.getType(), tool.getSilkTouchLevel());
+        }
+
+        DropRateModifierPipeline pipeline = settings.getModifierPipeline();
+        List<SimulationProfile.LocationSample> locations = profile.getLocations();
+        locationWeights = new double[locations.size()];
+        locationFactors = new double[locations.size()];
+        for(int i=0;i<locations.size();i++){
+            SimulationProfile.LocationSample location = locations.get(i);
+            locationWeights[i] = location.getWeight();
+            double factor = pipeline.getWorldFactor(location.getWorld());
+            if(location.getBiome()!=null) factor *= pipeline.getBiomeFactor(location.getBiome());
+            if(location.getY()!=null) factor *= pipeline.getDepthFactor(location.getY());
+            if(location.getTime()!=null) factor *= pipeline.getTimeFactor(location.getTime());
+            locationFactors[i] = factor;
+        }
+        streakLimits = new long[TrophyType.values().length];
+        for(TrophyType type : types){
+            double lowest = Double.POSITIVE_INFINITY;//the lowest droprate that can still win, which sets the longest expected streak
+            for(int tool=0;tool<toolWeights.length;tool++){
+                if(!toolPermitted[tool] || !(toolWeights[tool]>0)) continue;
+                for(int location=0;location<locationWeights.length;location++){
+                    if(!(locationWeights[location]>0)) continue;
+                    double droprate = TrophyRoll.getEffectiveDropRate(settings, type, toolLooting[tool], locationFactors[location], 0);
+                    if(droprate>0 && droprate<lowest) lowest = droprate;
+                }
+            }
+            if(lowest!=Double.POSITIVE_INFINITY) streakLimits[type.ordinal()] = (long) Math.min(MAX_STREAK_LIMIT, Math.ceil(STREAK_LIMIT_FACTOR / lowest));
+        }
+        toCumulative(toolWeights);
+        toCumulative(locationWeights);
+    }
+
+    private static void toCumulative(double[] weights){
+        double total = 0;
+        for(double weight : weights) total += weight;
+        if(!(total>0)) throw new IllegalArgumentException("at least one sample must have a weight above 0");
+        double sum = 0;
+        for(int i=0;i<weights.length;i++){
+            sum += weights[i];
+            weights[i] = sum / total;
+        }
+        weights[weights.length - 1] = 1.0;//rounding must not leave a gap below 1
+    }
+
+    private static int sample(double[] cumulative, SeededRollSource source){
+        if(cumulative.length==1) return 0;
+        double roll = source.nextRoll();
+        for(int i=0;i<cumulative.length;i++){
+            if(roll < cumulative[i]) return i;
+        }
+        return cumulative.length - 1;
+    }
+
+    /**
+     * Runs the simulation in the common fork/join pool
+     * @param players the number of players to simulate
+     * @param hours the number of hours each player mines for
+     * @param seed the seed of the rolls
+     * @return the results
+     */
+    public SimulationResult run(long players, int hours, long seed){
+        return run(players, hours, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the simulation
+     * @param players the number of players to simulate
+     * @param hours the number of hours each player mines for
+     * @param seed the seed of the rolls
+     * @param pool the pool to run the simulation tasks in
+     * @return the results
+     */
+    public SimulationResult run(long players, int hours, long seed, ForkJoinPool pool){
+        if(players<0 || hours<0) throw new IllegalArgumentException("players and hours must not be negative");
+        long start = System.nanoTime();
+        double breaksPerPlayer = Math.max(1, profile.getTotalBlocksPerHour() * hours);
+        long playersPerTask = Math.max(1, (long) (BREAKS_PER_TASK / breaksPerPlayer));
+        SimulationResult result = pool.invoke(new SimulationTask(0, players, hours, playersPerTask, new SeededRollSource(seed)));
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private final class SimulationTask extends RecursiveTask<SimulationResult> {
+        private static final long serialVersionUID = 1L;
+        private final long from;
+        private final long to;
+        private final int hours;
+        private final long playersPerTask;
+        private final SeededRollSource source;
+
+        SimulationTask(long from, long to, int hours, long playersPerTask, SeededRollSource source){
+            this.from = from;
+            this.to = to;
+            this.hours = hours;
+            this.playersPerTask = playersPerTask;
+            this.source = source;
+        }
+
+        @Override
+        protected SimulationResult compute(){
+            if(to - from <= playersPerTask){
+                SimulationResult result = new SimulationResult(to - from, hours);
+                int[] pity = new int[TrophyType.values().length];
+                long[] streak = new long[TrophyType.values().length];
+                for(long player=from;player<to;player++) simulatePlayer(result, pity, streak);
+                return result;
+            }
+            long middle = from + (to - from) / 2;
+            SimulationTask right = new SimulationTask(middle, to, hours, playersPerTask, source.split());//split before forking, so the streams do not depend on scheduling
+            SimulationTask left = new SimulationTask(from, middle, hours, playersPerTask, source);
+            right.fork();
+            SimulationResult result = left.compute();
+            SimulationResult other = right.join();
+            SimulationResult merged = new SimulationResult(result.getPlayers() + other.getPlayers(), hours);
+            merged.merge(result);
+            merged.merge(other);
+            return merged;
+        }
+
+        private void simulatePlayer(SimulationResult result, int[] pity, long[] streak){
+            Arrays.fill(pity, 0);
+            Arrays.fill(streak, 0);
+            for(int hour=0;hour<hours;hour++){
+                for(TrophyType type : types){
+                    int index = type.ordinal();
+                    double rate = profile.getBlocksPerHour(type);
+                    long blocks = (long) (rate * (hour + 1)) - (long) (rate * hour);//fractional rates spread over the hours
+                    int won = 0;
+                    for(long block=0;block<blocks;block++){
+                        streak[index]++;
+                        if(roll(type, pity)){
+                            won++;
+                            result.streaks[index].record(streak[index]);
+                            streak[index] = 0;
+                        }
+                    }
+                    result.breaks[index] += blocks;
+                    result.trophies[index] += won;
+                    result.hourly[index][Math.min(won, SimulationResult.MAX_HOURLY_COUNT)]++;
+                }
+            }
+            for(TrophyType type : types){
+                int index = type.ordinal();
+                if(streak[index]==0) continue;
+                long limit = streakLimits[index];
+                boolean finished = false;
+                while(streak[index] < limit){//finish the unbroken streak with blocks of this type only
+                    streak[index]++;
+                    if(roll(type, pity)){
+                        finished = true;
+                        break;
+                    }
+                }
+                if(finished) result.streaks[index].record(streak[index]);
+                else result.unfinishedStreaks[index]++;
+            }
+        }
+
+        private boolean roll(TrophyType type, int[] pity){
+            int tool = sample(toolWeights, source);
+            if(!toolPermitted[tool]) return false;
+            int pityAttempts = 0;
+            if(settings.isPityEnabled()) pityAttempts = pity[type.ordinal()] = (int) Math.min(Integer.MAX_VALUE, (long) pity[type.ordinal()] + 1);
+            double droprate = TrophyRoll.getEffectiveDropRate(settings, type, toolLooting[tool], locationFactors[sample(locationWeights, source)], pityAttempts);
+            if(!TrophyRoll.isSuccess(source.nextRoll(), droprate)) return false;
+            pity[type.ordinal()] = 0;
+            return true;
+        }
+    }
+}
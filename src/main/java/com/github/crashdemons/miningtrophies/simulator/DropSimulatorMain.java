@@ -0,0 +1,76 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.simulator;
+
+import com.github.crashdemons.miningtrophies.TrophySettings;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * The command-line entry point of the drop simulator.
+ *
+ * Usage: {@code java -cp MiningTrophies.jar:spigot-api.jar com.github.crashdemons.miningtrophies.simulator.DropSimulatorMain [config.yml] [profile.yml]}
+ *
+ * The configuration is the plugin's config.yml, with any missing settings taken from the defaults in the jar, the same way the plugin loads it.
+ * The profile describes how players mine (see simulation.yml in the jar, which is used when no profile is given) and also sets
+ * the number of players, hours, seed and threads of the simulation.
+ * @author crash
+ */
+public final class DropSimulatorMain {
+    private DropSimulatorMain(){}
+
+    /**
+     * Runs the simulator and prints the results
+     * @param args the paths of the plugin configuration and the simulation profile, both optional
+     * @throws Exception if a file could not be read
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length>2 || (args.length>0 && (args[0].equals("-h") || args[0].equals("--help")))){
+            System.err.println("Usage: java -cp MiningTrophies.jar:spigot-api.jar "+DropSimulatorMain.class.getName()+" [config.yml] [profile.yml]");
+            System.exit(2);
+            return;
+        }
+        YamlConfiguration config = args.length>0 ? YamlConfiguration.loadConfiguration(new File(args[0])) : new YamlConfiguration();
+        config.setDefaults(loadResource("config.yml"));
+        YamlConfiguration profileConfig = args.length>1 ? YamlConfiguration.loadConfiguration(new File(args[1])) : loadResource("simulation.yml");
+
+        SimulationProfile profile;
+        try{
+            profile = SimulationProfile.fromConfig(profileConfig);
+        }catch(IllegalArgumentException e){
+            System.err.println("Invalid simulation profile: "+e.getMessage());
+            System.exit(1);
+            return;
+        }
+        long players = profileConfig.getLong("players", 1000);
+        int hours = profileConfig.getInt("hours", 100);
+        long seed = profileConfig.getLong("seed", System.nanoTime());
+        int threads = profileConfig.getInt("threads", 0);
+
+        DropSimulator simulator = new DropSimulator(TrophySettings.fromConfig(config), profile);
+        ForkJoinPool pool = threads>0 ? new ForkJoinPool(threads) : ForkJoinPool.commonPool();
+        try{
+            System.out.println("Seed: "+seed+", threads: "+pool.getParallelism());
+            for(String line : simulator.run(players, hours, seed, pool).formatReport(profile)) System.out.println(line);
+        }finally{
+            if(pool!=ForkJoinPool.commonPool()) pool.shutdown();
+        }
+    }
+
+    private static YamlConfiguration loadResource(String name) throws Exception {
+        try(InputStream stream = DropSimulatorMain.class.getResourceAsStream("/"+name)){
+            if(stream==null) return new YamlConfiguration();
+            try(Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)){
+                return YamlConfiguration.loadConfiguration(reader);
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.simulator;
+
+import com.github.crashdemons.miningtrophies.TrophyType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.block.Biome;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Describes how the simulated players mine: how many trophy blocks of each type they break per hour, which tools they use, and where they mine.
+ *
+ * Tools and locations are weighted samples, one of each is picked at random for every block broken.
+ * @author crash
+ */
+public final class SimulationProfile {
+    private final double[] blocksPerHour;//indexed by TrophyType ordinal
+    private final List<ToolSample> tools;
+    private final List<LocationSample> locations;
+
+    /**
+     * A tool used for some fraction of the blocks broken
+     */
+    public static final class ToolSample {
+        private final double weight;
+        private final Material type;
+        private final int lootingLevel;
+        private final int silkTouchLevel;
+
+        /**
+         * Constructs a tool sample
+         * @param weight the relative number of blocks broken with the tool
+         * @param type the material of the tool
+         * @param lootingLevel the level of looting on the tool
+         * @param silkTouchLevel the level of silk touch on the tool
+         */
+        public ToolSample(double weight, Material type, int lootingLevel, int silkTouchLevel){
+            if(!(weight>=0)) throw new IllegalArgumentException("tool weight must not be negative");
+            this.weight = weight;
+            this.type = type==null ? Material.AIR : type;
+            this.lootingLevel = lootingLevel;
+            this.silkTouchLevel = silkTouchLevel;
+        }
+
+        public double getWeight(){ return weight; }
+
+        public Material getType(){ return type; }
+
+        public int getLootingLevel(){ return lootingLevel; }
+
+        public int getSilkTouchLevel(){ return silkTouchLevel; }
+    }
+
+    /**
+     * A place where some fraction of the blocks are broken. Any part may be left out, so that the modifiers for it do not apply.
+     */
+    public static final class LocationSample {
+        private final double weight;
+        private final String world;
+        private final Biome biome;
+        private final Integer y;
+        private final Long time;
+
+        /**
+         * Constructs a location sample
+         * @param weight the relative number of blocks broken at the location
+         * @param world the name of the world, or null
+         * @param biome the biome, or null
+         * @param y the Y-level, or null
+         * @param time the world time in ticks, or null
+         */
+        public LocationSample(double weight, String world, Biome biome, Integer y, Long time){
+            if(!(weight>=0)) throw new IllegalArgumentException("location weight must not be negative");
+            this.weight = weight;
+            this.world = world;
+            this.biome = biome;
+            this.y = y;
+            this.time = time;
+        }
+
+        public double getWeight(){ return weight; }
+
+        public String getWorld(){ return world; }
+
+        public Biome getBiome(){ return biome; }
+
+        public Integer getY(){ return y; }
+
+        public Long getTime(){ return time; }
+    }
+
+    /**
+     * Constructs a profile
+     * @param blocksPerHour the number of blocks of each trophy type broken per hour by each player
+     * @param tools the tools used, or an empty list for bare hands
+     * @param locations the places mined, or an empty list for no location modifiers
+     */
+    public SimulationProfile(Map<TrophyType,Double> blocksPerHour, List<ToolSample> tools, List<LocationSample> locations){
+        this.blocksPerHour = new double[TrophyType.values().length];
+        for(Map.Entry<TrophyType,Double> entry : blocksPerHour.entrySet()){
+            double rate = entry.getValue();
+            if(!(rate>=0)) throw new IllegalArgumentException("blocks per hour of "+entry.getKey()+" must not be negative");
+            this.blocksPerHour[entry.getKey().ordinal()] = rate;
+        }
+        ArrayList<ToolSample> toolList = new ArrayList<>(tools);
+        if(toolList.isEmpty()) toolList.add(new ToolSample(1, Material.AIR, 0, 0));
+        ArrayList<LocationSample> locationList = new ArrayList<>(locations);
+        if(locationList.isEmpty()) locationList.add(new LocationSample(1, null, null, null, null));
+        this.tools = Collections.unmodifiableList(toolList);
+        this.locations = Collections.unmodifiableList(locationList);
+    }
+
+    /**
+     * Gets the number of blocks of a trophy type broken per hour by each player
+     * @param type the trophy type
+     * @return the blocks per hour
+     */
+    public double getBlocksPerHour(TrophyType type){
+        return blocksPerHour[type.ordinal()];
+    }
+
+    /**
+     * Gets the number of trophy blocks of every type broken per hour by each player
+     * @return the blocks per hour
+     */
+    public double getTotalBlocksPerHour(){
+        double total = 0;
+        for(double rate : blocksPerHour) total += rate;
+        return total;
+    }
+
+    public List<ToolSample> getTools(){ return tools; }
+
+    public List<LocationSample> getLocations(){ return locations; }
+
+    /**
+     * Parses a profile from a configuration, with a "blocksperhour" section of trophy types (such as diamond_ore: 8)
+     * and "tools" and "locations" lists of weighted samples.
+     * @param config the profile configuration
+     * @return the parsed profile
+     * @throws IllegalArgumentException if the configuration names an unknown trophy type, material or biome
+     */
+    public static SimulationProfile fromConfig(ConfigurationSection config){
+        EnumMap<TrophyType,Double> blocks = new EnumMap<>(TrophyType.class);
+        ConfigurationSection blockSection = config.getConfigurationSection("blocksperhour");
+        if(blockSection!=null){
+            for(String key : blockSection.getKeys(false)){
+                blocks.put(parseType(key), blockSection.getDouble(key));
+            }
+        }
+        ArrayList<ToolSample> tools = new ArrayList<>();
+        for(Map<?,?> entry : config.getMapList("tools")){
+            Material type = Material.matchMaterial(getString(entry, "type", "air"));
+            if(type==null) throw new IllegalArgumentException("unknown tool material: "+entry.get("type"));
+            tools.add(new ToolSample(getDouble(entry, "weight", 1), type, (int) getDouble(entry, "looting", 0), (int) getDouble(entry, "silktouch", 0)));
+        }
+        ArrayList<LocationSample> locations = new ArrayList<>();
+        for(Map<?,?> entry : config.getMapList("locations")){
+            Object y = entry.get("y");
+            Object time = entry.get("time");
+            locations.add(new LocationSample(getDouble(entry, "weight", 1), getString(entry, "world", null), parseBiome(getString(entry, "biome", null)),
+                    y instanceof Number ? ((Number) y).intValue() : null, time instanceof Number ? ((Number) time).longValue() : null));
+        }
+        return new SimulationProfile(blocks, tools, locations);
+    }
+
+    private static TrophyType parseType(String name){
+        try{
+            return TrophyType.valueOf(name.toUpperCase());
+        }catch(IllegalArgumentException e){
+            throw new IllegalArgumentException("unknown trophy type: "+name);
+        }
+    }
+
+    private static Biome parseBiome(String name){
+        if(name==null) return null;
+        NamespacedKey key = NamespacedKey.fromString(name.toLowerCase());
+        for(Biome biome : Biome.values()){
+            if(biome.getKey()!=null && biome.getKey().equals(key)) return biome;
+        }
+        throw new IllegalArgumentException("unknown biome: "+name);
+    }
+
+    private static String getString(Map<?,?> map, String key, String def){
+        Object value = map.get(key);
+        return value==null ? def : value.toString();
+    }
+
+    private static double getDouble(Map<?,?> map, String key, double def){
+        Object value = map.get(key);
+        if(value instanceof Number) return ((Number) value).doubleValue();
+        if(value instanceof Boolean) return ((Boolean) value) ? 1 : 0;//silktouch: true
+        return def;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.simulator;
+
+import com.github.crashdemons.miningtrophies.TrophyType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of a drop simulation: trophies won, the distribution of trophies per hour, and dry streaks for each trophy type.
+ *
+ * Results are also merged from the results of parallel simulation tasks, which is why the counters are mutable inside the package.
+ * @author crash
+ */
+public final class SimulationResult {
+    /**
+     * Hourly counts of this many trophies or more share the last bucket of {@link #getHourlyDistribution(TrophyType)}
+     */
+    public static final int MAX_HOURLY_COUNT = 64;
+    private static final double[] REPORTED_QUANTILES = {0.5, 0.9, 0.99};
+
+    private final long players;
+    private final int hours;
+    final long[] breaks;
+    final long[] trophies;
+    final long[][] hourly;
+    final StreakHistogram[] streaks;
+    final long[] unfinishedStreaks;
+    long elapsedNanos = 0;
+
+    SimulationResult(long players, int hours){
+        int size = TrophyType.values().length;
+        this.players = players;
+        this.hours = hours;
+        breaks = new long[size];
+        trophies = new long[size];
+        hourly = new long[size][MAX_HOURLY_COUNT + 1];
+        streaks = new StreakHistogram[size];
+        for(int i=0;i<size;i++) streaks[i] = new StreakHistogram();
+        unfinishedStreaks = new long[size];
+    }
+
+    void merge(SimulationResult other){
+        for(int i=0;i<breaks.length;i++){
+            breaks[i] += other.breaks[i];
+            trophies[i] += other.trophies[i];
+            for(int j=0;j<=MAX_HOURLY_COUNT;j++) hourly[i][j] += other.hourly[i][j];
+            streaks[i].merge(other.streaks[i]);
+            unfinishedStreaks[i] += other.unfinishedStreaks[i];
+        }
+    }
+
+    /**
+     * Gets the number of simulated players
+     * @return the player count
+     */
+    public long getPlayers(){ return players; }
+
+    /**
+     * Gets the number of hours each simulated player mined for
+     * @return the hours per player
+     */
+    public int getHours(){ return hours; }
+
+    /**
+     * Gets the wall-clock time taken by the simulation
+     * @return the time in nanoseconds
+     */
+    public long getElapsedNanos(){ return elapsedNanos; }
+
+    /**
+     * Gets the number of blocks of a trophy type broken in the simulation, not counting blocks mined only to finish dry streaks
+     * @param type the trophy type
+     * @return the number of blocks broken
+     */
+    public long getBreaks(TrophyType type){ return breaks[type.ordinal()]; }
+
+    /**
+     * Gets the number of trophy blocks of every type broken in the simulation
+     * @return the number of blocks broken
+     */
+    public long getTotalBreaks(){
+        long total = 0;
+        for(long count : breaks) total += count;
+        return total;
+    }
+
+    /**
+     * Gets the number of trophies of a type won in the simulation
+     * @param type the trophy type
+     * @return the number of trophies
+     */
+    public long getTrophies(TrophyType type){ return trophies[type.ordinal()]; }
+
+    /**
+     * Gets the expected number of trophies of a type won by a player per hour
+     * @param type the trophy type
+     * @return the mean trophies per hour
+     */
+    public double getTrophiesPerHour(TrophyType type){
+        double playerHours = (double) players * hours;
+        return playerHours==0 ? 0 : trophies[type.ordinal()] / playerHours;
+    }
+
+    /**
+     * Gets the expected number of trophies of every type won by a player per hour
+     * @return the mean trophies per hour
+     */
+    public double getTotalTrophiesPerHour(){
+        double total = 0;
+        for(TrophyType type : TrophyType.values()) total += getTrophiesPerHour(type);
+        return total;
+    }
+
+    /**
+     * Gets the number of player-hours in which each number of trophies of a type were won
+     * @param type the trophy type
+     * @return the counts, indexed by the number of trophies won in the hour up to {@link #MAX_HOURLY_COUNT}
+     */
+    public long[] getHourlyDistribution(TrophyType type){
+        return hourly[type.ordinal()].clone();
+    }
+
+    /**
+     * Gets the fraction of player-hours in which no trophy of a type was won
+     * @param type the trophy type
+     * @return the fraction, between 0 and 1
+     */
+    public double getChanceOfNoneInHour(TrophyType type){
+        double playerHours = (double) players * hours;
+        return playerHours==0 ? 0 : hourly[type.ordinal()][0] / playerHours;
+    }
+
+    /**
+     * Gets the distribution of dry streaks for a trophy type: the number of blocks of that type mined up to and including each trophy won
+     * @param type the trophy type
+     * @return the histogram of streak lengths, which must not be modified
+     */
+    public StreakHistogram getDryStreaks(TrophyType type){ return streaks[type.ordinal()]; }
+
+    /**
+     * Gets the number of dry streaks that were still unbroken when the simulation gave up on them. These are left out of {@link #getDryStreaks(TrophyType)}.
+     * @param type the trophy type
+     * @return the number of unfinished streaks
+     */
+    public long getUnfinishedStreaks(TrophyType type){ return unfinishedStreaks[type.ordinal()]; }
+
+    /**
+     * Formats the results as lines of text for the console
+     * @param profile the profile that was simulated, used to convert dry streaks to hours
+     * @return the report lines
+     */
+    public List<String> formatReport(SimulationProfile profile){
+        ArrayList<String> lines = new ArrayList<>();
+        lines.add(String.format("Simulated %d breaks: %d players x %d hours in %.1fs", getTotalBreaks(), players, hours, elapsedNanos / 1e9));
+        lines.add(String.format("Expected trophies per hour: %.4f", getTotalTrophiesPerHour()));
+        for(TrophyType type : TrophyType.values()){
+            if(breaks[type.ordinal()]==0) continue;
+            lines.add(String.format("%s: %d trophies from %d blocks, %.4f per hour, %.1f%% of hours with none",
+                    type.name().toLowerCase(), trophies[type.ordinal()], breaks[type.ordinal()], getTrophiesPerHour(type), 100 * getChanceOfNoneInHour(type)));
+            StreakHistogram streak = streaks[type.ordinal()];
+            if(streak.getCount()==0) continue;
+            double blocksPerHour = profile.getBlocksPerHour(type);
+            StringBuilder line = new StringBuilder("  dry streak (blocks / hours):");
+            for(double quantile : REPORTED_QUANTILES){
+                long length = streak.getValueAtQuantile(quantile);
+                line.append(String.format(" p%d %d / %.1f,", Math.round(quantile * 100), length, length / blocksPerHour));
+            }
+            line.append(String.format(" max %d / %.1f", streak.getMax(), streak.getMax() / blocksPerHour));
+            if(unfinishedStreaks[type.ordinal()]>0) line.append(" (").append(unfinishedStreaks[type.ordinal()]).append(" unfinished)");
+            lines.add(line.toString());
+            long[] distribution = hourly[type.ordinal()];
+            StringBuilder perHour = new StringBuilder("  trophies per hour:");
+            for(int count=0;count<=MAX_HOURLY_COUNT;count++){
+                if(distribution[count]==0) continue;
+                perHour.append(' ').append(count).append(count==MAX_HOURLY_COUNT ? "+" : "").append('=').append(distribution[count]);
+            }
+            lines.add(perHour.toString());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.simulator;
+
+/**
+ * A histogram of dry-streak lengths with logarithmic buckets.
+ *
+ * Lengths below 64 are kept exactly, and each power of two above that is split into 64 linear sub-buckets,
+ * so percentiles are accurate to within about 1.6% up to 2^48 blocks.
+ * This is not thread-safe: each simulation task fills its own histogram, and they are merged when the tasks join.
+ * @author crash
+ */
+public final class StreakHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 48;//lengths of 2^48 or more share the last bucket
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKETS + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    static int bucketIndex(long value){
+        if(value < SUB_BUCKETS) return value < 0 ? 0 : (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if(magnitude >= MAX_MAGNITUDE) return BUCKETS - 1;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index){
+        if(index < SUB_BUCKETS) return index;
+        if(index >= BUCKETS - 1) return Long.MAX_VALUE;
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long lower = ((long) (SUB_BUCKETS + subBucket)) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Records the length of a streak
+     * @param length the number of blocks mined in the streak
+     */
+    public void record(long length){
+        if(length < 0) length = 0;
+        counts[bucketIndex(length)]++;
+        count++;
+        sum += length;
+        if(length > max) max = length;
+    }
+
+    /**
+     * Adds every streak recorded by another histogram to this one
+     * @param other the histogram to add
+     */
+    public void merge(StreakHistogram other){
+        for(int i=0;i<BUCKETS;i++) counts[i] += other.counts[i];
+        count += other.count;
+        sum += other.sum;
+        if(other.max > max) max = other.max;
+    }
+
+    /**
+     * Gets the number of streaks recorded
+     * @return the count
+     */
+    public long getCount(){
+        return count;
+    }
+
+    /**
+     * Gets the mean streak length
+     * @return the mean, or 0 if nothing was recorded
+     */
+    public double getMean(){
+        return count==0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Gets the longest streak recorded
+     * @return the maximum length
+     */
+    public long getMax(){
+        return max;
+    }
+
+    /**
+     * Gets the length below which a fraction of the recorded streaks fall, to within the bucket precision.
+     * @param quantile the fraction, between 0 and 1 (0.99 for the 99th percentile)
+     * @return the length, or 0 if nothing was recorded
+     */
+    public long getValueAtQuantile(double quantile){
+        if(count==0) return 0;
+        long target = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for(int i=0;i<BUCKETS;i++){
+            seen += counts[i];
+            if(seen >= target) return Math.min(bucketUpperBound(i), max);
+        }
+        return max;
+    }
+}
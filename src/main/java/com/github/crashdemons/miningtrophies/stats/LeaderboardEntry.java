@@ -0,0 +1,48 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.stats;
+
+import java.util.UUID;
+
+/**
+ * An immutable leaderboard position: a player and their count at the time the leaderboard snapshot was taken.
+ * @author crash
+ */
+public final class LeaderboardEntry {
+    private final UUID player;
+    private final long count;
+
+    /**
+     * Constructs an entry
+     * @param player the UUID of the player
+     * @param count the count of the player
+     */
+    public LeaderboardEntry(UUID player, long count){
+        this.player = player;
+        this.count = count;
+    }
+
+    /**
+     * Gets the player in this position
+     * @return the UUID of the player
+     */
+    public UUID getPlayer(){
+        return player;
+    }
+
+    /**
+     * Gets the count of the player
+     * @return the count
+     */
+    public long getCount(){
+        return count;
+    }
+
+    @Override
+    public String toString(){
+        return player+"="+count;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.stats;
+
+import com.github.crashdemons.miningtrophies.TrophyType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only binary log of statistics changes.
+ *
+ * Each flush appends one checksummed batch of per-player deltas on a background writer thread and syncs it to disk,
+ * so a crash loses at most the changes made since the last flush. A batch that was cut short by a crash is detected by its checksum and discarded.
+ * When the log is loaded, the batches are replayed and the file is compacted into a single batch of totals.
+ * The header lists trophy types and statistics by name, so the log survives either being added or reordered.
+ * If the log has to be compacted before it can be appended to (because it ends in an incomplete batch or its header is out of date) and that fails,
+ * nothing more is appended until the plugin is enabled again, since the new batches would be misread or discarded.
+ * @author crash
+ */
+public final class StatsLog {
+    private static final int MAGIC = 0x4D545354;//"MTST"
+    private static final int VERSION = 1;
+    private static final int BATCH_MAGIC = 0x42415443;//"BATC"
+
+    private final File file;
+    private final Logger logger;
+    private ExecutorService writer = null;
+    private volatile boolean appendable = true;//false if the log could not be compacted into a form that appends can follow
+
+    /**
+     * Constructs the log
+     * @param file the log file
+     * @param logger the logger to report errors to
+     */
+    public StatsLog(File file, Logger logger){
+        this.file = file;
+        this.logger = logger;
+    }
+
+    /**
+     * Replays the log into a set of statistics, then compacts the log. This reads and writes the file on the calling thread and should only be done before the writer is started.
+     * @param stats the statistics to load counts into
+     */
+    public void load(TrophyStatistics stats){
+        if(!file.exists()) return;
+        HashMap<UUID,long[]> replayed = new HashMap<>();
+        int batches = 0;
+        boolean compact = false;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            if(in.readInt()!=MAGIC) throw new IOException("not a statistics log");
+            int version = in.readInt();
+            if(version!=VERSION) throw new IOException("unsupported statistics log version "+version);
+            int[] typeIndex = readNames(in, TrophyType.values());
+            int[] statIndex = readNames(in, TrophyStat.values());
+            compact = !isCurrentOrder(typeIndex, TrophyType.values().length) || !isCurrentOrder(statIndex, TrophyStat.values().length);//appends must use the current order
+            while(true){
+                int magic;
+                try{
+                    magic = in.readInt();
+                }catch(EOFException e){
+                    break;//clean end of the log
+                }
+                byte[] payload;
+                try{
+                    if(magic!=BATCH_MAGIC) throw new IOException("bad batch marker");
+                    int length = in.readInt();
+                    long checksum = in.readLong();
+                    if(length<0) throw new IOException("bad batch length");
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if(crc.getValue()!=checksum) throw new IOException("bad batch checksum");
+                }catch(IOException e){
+                    logger.warning("Discarding an incomplete batch at the end of the statistics log: "+e);
+                    compact = true;
+                    break;
+                }
+                replayBatch(payload, typeIndex, statIndex, replayed);
+                batches++;
+            }
+        }catch(IOException e){
+            logger.log(Level.WARNING, "Could not load the statistics log "+file+", starting a new one", e);
+            File corrupt = new File(file.getPath()+".corrupt");
+            if(!file.renameTo(corrupt)) logger.warning("Could not move the unreadable statistics log to "+corrupt);
+            return;
+        }
+        for(Map.Entry<UUID,long[]> entry : replayed.entrySet()){
+            stats.load(entry.getKey(), entry.getValue());
+        }
+        if((compact || batches>1) && !compact(replayed) && compact){
+            appendable = false;
+            logger.warning("Statistics will not be saved until the statistics log "+file+" can be compacted");
+        }
+    }
+
+    private static int[] readNames(DataInputStream in, Enum<?>[] values) throws IOException {
+        int count = in.readInt();
+        int[] index = new int[count];
+        for(int i=0;i<count;i++){
+            String name = in.readUTF();
+            index[i] = -1;//this name no longer exists
+            for(Enum<?> value : values){
+                if(value.name().equals(name)) index[i] = value.ordinal();
+            }
+        }
+        return index;
+    }
+
+    private static boolean isCurrentOrder(int[] index, int length){
+        if(index.length!=length) return false;
+        for(int i=0;i<index.length;i++){
+            if(index[i]!=i) return false;
+        }
+        return true;
+    }
+
+    private static void replayBatch(byte[] payload, int[] typeIndex, int[] statIndex, Map<UUID,long[]> replayed) throws IOException {
+        int statCount = TrophyStat.values().length;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int players = in.readInt();
+        for(int p=0;p<players;p++){
+            UUID player = new UUID(in.readLong(), in.readLong());
+            long[] counts = replayed.get(player);
+            if(counts==null){
+                counts = new long[TrophyStatistics.size()];
+                replayed.put(player, counts);
+            }
+            int entries = in.readInt();
+            for(int e=0;e<entries;e++){
+                int type = in.readInt();
+                for(int s=0;s<statIndex.length;s++){
+                    long value = in.readLong();
+                    if(type<0 || type>=typeIndex.length || typeIndex[type]<0 || statIndex[s]<0) continue;
+                    counts[typeIndex[type] * statCount + statIndex[s]] += value;
+                }
+            }
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        TrophyType[] types = TrophyType.values();
+        out.writeInt(types.length);
+        for(TrophyType type : types) out.writeUTF(type.name());
+        TrophyStat[] stats = TrophyStat.values();
+        out.writeInt(stats.length);
+        for(TrophyStat stat : stats) out.writeUTF(stat.name());
+    }
+
+    private static void writeBatch(DataOutputStream out, Map<UUID,long[]> batch) throws IOException {
+        int statCount = TrophyStat.values().length;
+        int typeCount = TrophyType.values().length;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeInt(batch.size());
+        for(Map.Entry<UUID,long[]> entry : batch.entrySet()){
+            long[] counts = entry.getValue();
+            payload.writeLong(entry.getKey().getMostSignificantBits());
+            payload.writeLong(entry.getKey().getLeastSignificantBits());
+            int entries = 0;
+            for(int type=0;type<typeCount;type++){
+                if(!isZero(counts, type*statCount, statCount)) entries++;
+            }
+            payload.writeInt(entries);
+            for(int type=0;type<typeCount;type++){
+                if(isZero(counts, type*statCount, statCount)) continue;
+                payload.writeInt(type);
+                for(int s=0;s<statCount;s++) payload.writeLong(counts[type*statCount + s]);
+            }
+        }
+        payload.flush();
+        byte[] data = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        out.writeInt(BATCH_MAGIC);
+        out.writeInt(data.length);
+        out.writeLong(crc.getValue());
+        out.write(data);
+    }
+
+    private static boolean isZero(long[] counts, int from, int length){
+        for(int i=from;i<from+length;i++){
+            if(counts[i]!=0) return false;
+        }
+        return true;
+    }
+
+    private boolean compact(Map<UUID,long[]> totals){
+        File temp = new File(file.getPath()+".tmp");
+        try(FileOutputStream stream = new FileOutputStream(temp)){
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            writeHeader(out);
+            writeBatch(out, totals);
+            out.flush();
+            stream.getFD().sync();
+        }catch(IOException e){
+            logger.log(Level.WARNING, "Could not compact the statistics log "+file, e);
+            temp.delete();
+            return false;
+        }
+        try{
+            try{
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }catch(AtomicMoveNotSupportedException e){
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        }catch(IOException e){
+            logger.log(Level.WARNING, "Could not replace the statistics log "+file, e);
+            temp.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Starts the background writer thread, if it is not already running.
+     */
+    public synchronized void start(){
+        if(writer!=null) return;
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MiningTrophies-stats-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a batch of changes to be appended in the background.
+     * @param batch the changed counts, indexed by {@link TrophyStatistics#index(TrophyType, TrophyStat)}. The arrays must not be modified afterwards.
+     */
+    public synchronized void appendAsync(Map<UUID,long[]> batch){
+        if(batch.isEmpty()) return;
+        if(writer==null){
+            append(batch);
+            return;
+        }
+        writer.execute(() -> append(batch));
+    }
+
+    /**
+     * Stops the background writer thread after finishing any queued batches.
+     */
+    public synchronized void stop(){
+        if(writer==null) return;
+        writer.shutdown();
+        try{
+            if(!writer.awaitTermination(10, TimeUnit.SECONDS)) logger.warning("Timed out waiting for statistics to be saved");
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    private void append(Map<UUID,long[]> batch){
+        if(!appendable) return;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(parent!=null) parent.mkdirs();
+        boolean newFile = !file.exists() || file.length()==0;
+        try(FileOutputStream stream = new FileOutputStream(file, true)){
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            if(newFile) writeHeader(out);
+            writeBatch(out, batch);
+            out.flush();
+            stream.getFD().sync();
+        }catch(IOException e){
+            logger.log(Level.WARNING, "Could not append to the statistics log "+file, e);
+        }
+    }
+}
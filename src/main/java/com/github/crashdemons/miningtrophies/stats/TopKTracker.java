@@ -0,0 +1,116 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Incrementally maintains the K players with the highest counts.
+ *
+ * Each update costs O(K) and never looks at players outside the top K, which is exact as long as counts only increase
+ * (a player can only enter the top K through an update of their own count).
+ * Updates may come from any thread and are serialized, which is cheap because they only happen when a trophy is won;
+ * the published snapshot is immutable and can be read from any thread without locking.
+ * Players with equal counts keep the order in which they reached that count.
+ * @author crash
+ */
+public final class TopKTracker {
+    private final UUID[] players;
+    private final long[] counts;
+    private int size = 0;
+    private volatile List<LeaderboardEntry> snapshot = Collections.emptyList();
+
+    /**
+     * Constructs an empty tracker
+     * @param capacity the number of players kept (K)
+     */
+    public TopKTracker(int capacity){
+        if(capacity<1) throw new IllegalArgumentException("capacity must be at least 1");
+        players = new UUID[capacity];
+        counts = new long[capacity];
+    }
+
+    /**
+     * Gets the number of players kept
+     * @return the capacity (K)
+     */
+    public int getCapacity(){
+        return players.length;
+    }
+
+    /**
+     * Updates the count of a player, after it increased.
+     * @param player the UUID of the player
+     * @param count the new count of the player
+     */
+    public synchronized void update(UUID player, long count){
+        int pos = -1;
+        for(int i=0;i<size;i++){
+            if(players[i].equals(player)){
+                pos = i;
+                break;
+            }
+        }
+        if(pos<0){
+            if(size==players.length){
+                if(count<=counts[size-1]) return;//not enough to enter the top
+                pos = size-1;
+            }else{
+                pos = size++;
+            }
+            players[pos] = player;
+        }else if(counts[pos]==count){
+            return;
+        }
+        counts[pos] = count;
+        while(pos>0 && counts[pos-1]<count){
+            swap(pos, pos-1);
+            pos--;
+        }
+        while(pos<size-1 && counts[pos+1]>count){
+            swap(pos, pos+1);
+            pos++;
+        }
+        publish();
+    }
+
+    private void swap(int a, int b){
+        UUID player = players[a];
+        players[a] = players[b];
+        players[b] = player;
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+    }
+
+    private void publish(){
+        ArrayList<LeaderboardEntry> entries = new ArrayList<>(size);
+        for(int i=0;i<size;i++){
+            entries.add(new LeaderboardEntry(players[i], counts[i]));
+        }
+        snapshot = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Gets the current top players, highest count first. Safe to call from any thread.
+     * @return an immutable snapshot of at most K entries
+     */
+    public List<LeaderboardEntry> snapshot(){
+        return snapshot;
+    }
+
+    /**
+     * Removes all players
+     */
+    public synchronized void clear(){
+        for(int i=0;i<size;i++) players[i] = null;
+        size = 0;
+        snapshot = Collections.emptyList();
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.stats;
+
+/**
+ * The statistics counted per player and trophy type
+ * @author crash
+ */
+public enum TrophyStat {
+    /**
+     * Blocks of a trophy type mined by survival players
+     */
+    BLOCKS_MINED,
+    /**
+     * Drop rolls made for a trophy type, after tool and permission checks
+     */
+    ROLLS_ATTEMPTED,
+    /**
+     * Trophies actually dropped
+     */
+    TROPHIES_WON;
+}
@@ -0,0 +1,218 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.stats;
+
+import com.github.crashdemons.miningtrophies.TrophyType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Per-player and per-trophy statistics counters.
+ *
+ * Server-wide totals are LongAdders and can be read from any thread.
+ * Per-player counters are primitive arrays indexed by {@link #index(TrophyType, TrophyStat)}, each guarded by its own player's lock,
+ * so players handled by different region threads never contend with each other;
+ * each player also accumulates the changes since the last flush, which are drained in batches for {@link StatsLog}.
+ * @author crash
+ */
+public final class TrophyStatistics {
+    private static final int STAT_COUNT = TrophyStat.values().length;
+
+    private final LongAdder[] totals;
+    private final ConcurrentHashMap<UUID,PlayerCounters> players = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<PlayerCounters> changed = new ConcurrentLinkedQueue<>();
+
+    private static final class PlayerCounters {
+        final UUID player;
+        final long[] totals;
+        final long[] pending;
+        boolean dirty = false;
+
+        PlayerCounters(UUID player, int size){
+            this.player = player;
+            this.totals = new long[size];
+            this.pending = new long[size];
+        }
+    }
+
+    /**
+     * Constructs an empty set of statistics
+     */
+    public TrophyStatistics(){
+        totals = new LongAdder[size()];
+        for(int i=0;i<totals.length;i++) totals[i] = new LongAdder();
+    }
+
+    /**
+     * Gets the number of counters kept for each player
+     * @return the number of counters
+     */
+    public static int size(){
+        return TrophyType.values().length * STAT_COUNT;
+    }
+
+    /**
+     * Gets the position of a counter in per-player counter arrays
+     * @param type the trophy type
+     * @param stat the statistic
+     * @return the counter index
+     */
+    public static int index(TrophyType type, TrophyStat stat){
+        return type.ordinal() * STAT_COUNT + stat.ordinal();
+    }
+
+    private PlayerCounters counters(UUID player){
+        PlayerCounters counters = players.get(player);
+        if(counters!=null) return counters;
+        return players.computeIfAbsent(player, id -> new PlayerCounters(id, size()));
+    }
+
+    /**
+     * Counts one occurrence of a statistic for a player. Safe to call from any thread.
+     * @param player the UUID of the player
+     * @param type the trophy type
+     * @param stat the statistic
+     */
+    public void record(UUID player, TrophyType type, TrophyStat stat){
+        record(player, type, stat, 1);
+    }
+
+    /**
+     * Counts a number of occurrences of a statistic for a player. Safe to call from any thread.
+     * @param player the UUID of the player
+     * @param type the trophy type
+     * @param stat the statistic
+     * @param amount the number of occurrences
+     */
+    public void record(UUID player, TrophyType type, TrophyStat stat, long amount){
+        int index = index(type, stat);
+        PlayerCounters counters = counters(player);
+        synchronized(counters){
+            counters.totals[index] += amount;
+            counters.pending[index] += amount;
+            if(!counters.dirty){
+                counters.dirty = true;
+                changed.add(counters);
+            }
+        }
+        totals[index].add(amount);
+    }
+
+    /**
+     * Adds previously saved counts for a player, without marking them as changed. Used when replaying the statistics log.
+     * @param player the UUID of the player
+     * @param counts the counts, indexed by {@link #index(TrophyType, TrophyStat)}
+     */
+    public void load(UUID player, long[] counts){
+        PlayerCounters counters = counters(player);
+        int size = Math.min(counts.length, counters.totals.length);
+        synchronized(counters){
+            for(int i=0;i<size;i++){
+                if(counts[i]==0) continue;
+                counters.totals[i] += counts[i];
+                totals[i].add(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets a server-wide total. Safe to call from any thread.
+     * @param type the trophy type
+     * @param stat the statistic
+     * @return the total count
+     */
+    public long getTotal(TrophyType type, TrophyStat stat){
+        return totals[index(type, stat)].sum();
+    }
+
+    /**
+     * Gets the count of a statistic for a player. Safe to call from any thread.
+     * @param player the UUID of the player
+     * @param type the trophy type
+     * @param stat the statistic
+     * @return the count
+     */
+    public long get(UUID player, TrophyType type, TrophyStat stat){
+        PlayerCounters counters = players.get(player);
+        if(counters==null) return 0;
+        synchronized(counters){
+            return counters.totals[index(type, stat)];
+        }
+    }
+
+    /**
+     * Takes the changes made since the last call, for every player that changed.
+     * @return the changed counts, indexed by {@link #index(TrophyType, TrophyStat)}
+     */
+    public Map<UUID,long[]> drainChanges(){
+        HashMap<UUID,long[]> deltas = new HashMap<>();
+        PlayerCounters counters;
+        while((counters = changed.poll())!=null){
+            synchronized(counters){
+                deltas.put(counters.player, counters.pending.clone());
+                Arrays.fill(counters.pending, 0);
+                counters.dirty = false;
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Gets the counts of every player. Safe to call from any thread.
+     * @return a copy of the counts of each player
+     */
+    public Map<UUID,long[]> snapshot(){
+        HashMap<UUID,long[]> copy = new HashMap<>();
+        for(PlayerCounters counters : players.values()){
+            synchronized(counters){
+                copy.put(counters.player, counters.totals.clone());
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Visits the counts of every player without copying them. Each player is locked while it is visited, and the arrays must not be modified or kept.
+     * @param action receives the UUID and counts of each player, indexed by {@link #index(TrophyType, TrophyStat)}
+     */
+    public void forEachPlayer(BiConsumer<UUID,long[]> action){
+        for(PlayerCounters counters : players.values()){
+            synchronized(counters){
+                action.accept(counters.player, counters.totals);
+            }
+        }
+    }
+
+    /**
+     * Gets the count of a statistic for a player across all trophy types. Safe to call from any thread.
+     * @param player the UUID of the player
+     * @param stat the statistic
+     * @return the count
+     */
+    public long get(UUID player, TrophyStat stat){
+        PlayerCounters counters = players.get(player);
+        if(counters==null) return 0;
+        long sum = 0;
+        synchronized(counters){
+            for(int i=stat.ordinal();i<counters.totals.length;i+=STAT_COUNT) sum += counters.totals[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Checks whether any counts changed since the last call to drainChanges.
+     * @return whether there are unflushed changes
+     */
+    public boolean hasChanges(){
+        return !changed.isEmpty();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.io.File;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class PityTrackerTest {
+    
+    public PityTrackerTest() {
+    }
+
+    @Test
+    public void testAttemptsAreCountedPerType() {
+        PityTracker tracker = new PityTracker();
+        UUID player = UUID.randomUUID();
+        assertEquals(1, tracker.recordAttempt(player, TrophyType.DIAMOND_ORE));
+        assertEquals(2, tracker.recordAttempt(player, TrophyType.DIAMOND_ORE));
+        assertEquals(1, tracker.recordAttempt(player, TrophyType.EMERALD_ORE));
+        assertEquals(2, tracker.getAttempts(player, TrophyType.DIAMOND_ORE));
+        assertEquals(0, tracker.getAttempts(UUID.randomUUID(), TrophyType.DIAMOND_ORE));
+        tracker.reset(player, TrophyType.DIAMOND_ORE);
+        assertEquals(0, tracker.getAttempts(player, TrophyType.DIAMOND_ORE));
+        assertEquals(1, tracker.getAttempts(player, TrophyType.EMERALD_ORE));
+    }
+
+    @Test
+    public void testDrainChanges() {
+        PityTracker tracker = new PityTracker();
+        UUID player = UUID.randomUUID();
+        assertFalse(tracker.hasChanges());
+        tracker.recordAttempt(player, TrophyType.DIAMOND_ORE);
+        assertTrue(tracker.hasChanges());
+        Map<UUID,int[]> batch = tracker.drainChanges();
+        assertFalse(tracker.hasChanges());
+        assertEquals(1, batch.get(player)[TrophyType.DIAMOND_ORE.ordinal()]);
+        tracker.recordAttempt(player, TrophyType.DIAMOND_ORE);
+        assertEquals(1, batch.get(player)[TrophyType.DIAMOND_ORE.ordinal()]);//batches are copies
+    }
+
+    @Test
+    public void testStoreRoundTrip() throws Exception {
+        File file = File.createTempFile("pity", ".dat");
+        file.delete();
+        try{
+            UUID player = UUID.randomUUID();
+            PityTracker tracker = new PityTracker();
+            for(int i=0;i<5;i++) tracker.recordAttempt(player, TrophyType.LAPIS_ORE);
+            PityStore store = new PityStore(file, Logger.getLogger("PityTrackerTest"));
+            store.start();
+            store.saveAsync(tracker.drainChanges());
+            store.stop();
+
+            PityTracker loaded = new PityTracker();
+            new PityStore(file, Logger.getLogger("PityTrackerTest")).load(loaded);
+            assertEquals(5, loaded.getAttempts(player, TrophyType.LAPIS_ORE));
+            assertEquals(0, loaded.getAttempts(player, TrophyType.DIAMOND_ORE));
+        }finally{
+            file.delete();
+        }
+    }
+    
+}
@@ -0,0 +1,85 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class PlacedBlockBitmapTest {
+    
+    public PlacedBlockBitmapTest() {
+    }
+
+    @Test
+    public void testIndex() {
+        assertEquals(0, PlacedBlockBitmap.index(0, -64, 0, -64));
+        assertEquals(PlacedBlockBitmap.index(1, 5, 2, 0), PlacedBlockBitmap.index(-15, 5, 18, 0));//same chunk-local position
+        assertEquals(4096, PlacedBlockBitmap.index(0, -48, 0, -64));//first block of the second section
+        assertEquals(24 * 4096 - 1, PlacedBlockBitmap.index(15, 319, 15, -64));//last block of a 384-block tall chunk
+    }
+
+    @Test
+    public void testSetAndClear() {
+        PlacedBlockBitmap bitmap = new PlacedBlockBitmap();
+        assertTrue(bitmap.isEmpty());
+        assertFalse(bitmap.get(100));
+        assertTrue(bitmap.set(100));
+        assertFalse(bitmap.set(100));
+        assertTrue(bitmap.get(100));
+        assertFalse(bitmap.get(101));
+        assertTrue(bitmap.set(5000));
+        assertEquals(2, bitmap.cardinality());
+        assertTrue(bitmap.clear(100));
+        assertFalse(bitmap.clear(100));
+        assertFalse(bitmap.get(100));
+        assertTrue(bitmap.clear(5000));
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void testMatchesBitSet() {
+        Random random = new Random(3);
+        PlacedBlockBitmap bitmap = new PlacedBlockBitmap();
+        BitSet expected = new BitSet();
+        for(int i=0;i<20000;i++){
+            int bit = random.nextInt(24 * 4096);
+            if(random.nextInt(3)==0){
+                assertEquals(expected.get(bit), bitmap.clear(bit));
+                expected.clear(bit);
+            }else{
+                assertEquals(!expected.get(bit), bitmap.set(bit));
+                expected.set(bit);
+            }
+        }
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+        PlacedBlockBitmap copy = PlacedBlockBitmap.fromPacked(bitmap.toPacked());
+        for(int bit=0;bit<24 * 4096;bit++){
+            assertEquals(expected.get(bit), bitmap.get(bit));
+            assertEquals(expected.get(bit), copy.get(bit));
+        }
+    }
+
+    @Test
+    public void testPackedSize() {
+        PlacedBlockBitmap bitmap = new PlacedBlockBitmap();
+        assertEquals(1, bitmap.toPacked().length);
+        for(int x=0;x<16;x++) bitmap.set(PlacedBlockBitmap.index(x, 12, 3, -64));//one row of blocks shares a word
+        assertEquals(3, bitmap.toPacked().length);
+    }
+
+    @Test
+    public void testUnknownFormat() {
+        assertTrue(PlacedBlockBitmap.fromPacked(new long[]{99, 0, 1}).isEmpty());
+        assertTrue(PlacedBlockBitmap.fromPacked(new long[0]).isEmpty());
+        assertTrue(PlacedBlockBitmap.fromPacked(null).isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class SeededRollSourceTest {
+    
+    public SeededRollSourceTest() {
+    }
+
+    @Test
+    public void testSameSeedSameRolls() {
+        SeededRollSource a = new SeededRollSource(1234);
+        SeededRollSource b = new SeededRollSource(1234);
+        for(int i=0;i<1000;i++){
+            assertEquals(a.nextRoll(), b.nextRoll(), 0.0);
+        }
+    }
+
+    @Test
+    public void testRollRange() {
+        SeededRollSource source = new SeededRollSource(42);
+        for(int i=0;i<10000;i++){
+            double roll = source.nextRoll();
+            assertTrue(roll >= 0.0 && roll < 1.0);
+        }
+    }
+
+    @Test
+    public void testBinomialLimits() {
+        SeededRollSource source = new SeededRollSource(5);
+        assertEquals(0, source.nextBinomial(0, 0.5));
+        assertEquals(0, source.nextBinomial(100, 0.0));
+        assertEquals(100, source.nextBinomial(100, 1.0));
+        for(int i=0;i<1000;i++){
+            int successes = source.nextBinomial(10, 0.3);
+            assertTrue(successes >= 0 && successes <= 10);
+        }
+    }
+
+    @Test
+    public void testBinomialTinyDropRate() {
+        SeededRollSource source = new SeededRollSource(3);
+        for(int i=0;i<1000;i++){
+            assertEquals(0, source.nextBinomial(Integer.MAX_VALUE, 1e-300));//skips are far beyond Long.MAX_VALUE
+        }
+    }
+
+    @Test
+    public void testBinomialMean() {
+        SeededRollSource source = new SeededRollSource(11);
+        double[] rates = {0.0001, 0.03, 0.4, 0.9};
+        int rolls = 64;
+        int samples = 20000;
+        for(double rate : rates){
+            long total = 0;
+            for(int i=0;i<samples;i++) total += source.nextBinomial(rolls, rate);
+            double mean = (double) total / samples;
+            double expected = rolls * rate;
+            double stddev = Math.sqrt(rolls * rate * (1 - rate) / samples);
+            assertEquals(expected, mean, 5 * stddev + 1e-9);
+        }
+    }
+
+    @Test
+    public void testSplitIsDeterministic() {
+        SeededRollSource a = new SeededRollSource(99).split();
+        SeededRollSource b = new SeededRollSource(99).split();
+        for(int i=0;i<1000;i++){
+            assertEquals(a.nextRoll(), b.nextRoll(), 0.0);
+        }
+    }
+
+    @Test
+    public void testPerThreadSourcesAreSplit() throws InterruptedException {
+        PerThreadRollSource shared = new PerThreadRollSource(new SeededRollSource(99));
+        SeededRollSource expected = new SeededRollSource(99);
+        SeededRollSource first = expected.split();
+        SeededRollSource second = expected.split();
+        assertEquals(first.nextRoll(), shared.nextRoll(), 0.0);
+        double[] other = new double[1];
+        Thread thread = new Thread(() -> other[0] = shared.nextRoll());
+        thread.start();
+        thread.join();
+        assertEquals(second.nextRoll(), other[0], 0.0);
+        assertEquals(first.nextRoll(), shared.nextRoll(), 0.0);//this thread keeps its own sequence
+    }
+
+}
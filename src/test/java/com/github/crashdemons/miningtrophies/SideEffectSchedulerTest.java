@@ -0,0 +1,121 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class SideEffectSchedulerTest {
+
+    public SideEffectSchedulerTest() {
+    }
+
+    private static final class ManualScheduler implements TaskScheduler {
+        Runnable timer = null;
+        boolean cancelled = false;
+
+        @Override
+        public boolean isRegionThreaded(){ return false; }
+
+        @Override
+        public Task runTimer(Runnable task, long delayTicks, long periodTicks){
+            timer = task;
+            return () -> cancelled = true;
+        }
+
+        @Override
+        public Task runAsyncTimer(Runnable task, long delayTicks, long periodTicks){
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void runAt(Location location, Runnable task){ task.run(); }
+
+        @Override
+        public void runFor(Entity entity, Runnable task){ task.run(); }
+    }
+
+    private static SideEffectScheduler newScheduler(){
+        Logger logger = Logger.getLogger("SideEffectSchedulerTest");
+        logger.setUseParentHandlers(false);
+        return new SideEffectScheduler(logger);
+    }
+
+    @Test
+    public void testEffectsCarryOverWhenBudgetIsUsed() {
+        ManualScheduler tasks = new ManualScheduler();
+        SideEffectScheduler effects = newScheduler();
+        effects.start(tasks, 1);//every effect uses up the budget
+        List<Integer> ran = new ArrayList<>();
+        for(int i=0;i<3;i++){
+            int effect = i;
+            effects.submit(() -> ran.add(effect));
+        }
+        assertTrue(ran.isEmpty());
+        assertEquals(3, effects.getPending());
+        tasks.timer.run();
+        assertEquals(1, ran.size());
+        assertEquals(1, effects.getTicksOverBudget());
+        tasks.timer.run();
+        tasks.timer.run();
+        assertEquals(3, ran.size());
+        assertEquals(0, ran.get(0).intValue());
+        assertEquals(2, ran.get(2).intValue());
+        assertEquals(0, effects.getPending());
+        assertEquals(2, effects.getTicksOverBudget());
+    }
+
+    @Test
+    public void testFailedEffectsDoNotStopOthers() {
+        ManualScheduler tasks = new ManualScheduler();
+        SideEffectScheduler effects = newScheduler();
+        effects.start(tasks, Long.MAX_VALUE);
+        List<Integer> ran = new ArrayList<>();
+        effects.submit(() -> ran.add(1));
+        effects.submit(() -> { throw new IllegalStateException("test"); });
+        effects.submit(() -> ran.add(3));
+        tasks.timer.run();
+        assertEquals(2, ran.size());
+        assertEquals(3, effects.getExecuted());
+        assertEquals(1, effects.getFailed());
+        assertEquals(0, effects.getTicksOverBudget());
+    }
+
+    @Test
+    public void testZeroBudgetRunsImmediately() {
+        ManualScheduler tasks = new ManualScheduler();
+        SideEffectScheduler effects = newScheduler();
+        effects.start(tasks, 0);
+        assertNull(tasks.timer);
+        List<Integer> ran = new ArrayList<>();
+        effects.submit(() -> ran.add(1));
+        assertEquals(1, ran.size());
+    }
+
+    @Test
+    public void testStopRunsQueuedEffects() {
+        ManualScheduler tasks = new ManualScheduler();
+        SideEffectScheduler effects = newScheduler();
+        effects.start(tasks, 1);
+        List<Integer> ran = new ArrayList<>();
+        effects.submit(() -> ran.add(1));
+        effects.submit(() -> ran.add(2));
+        effects.stop();
+        assertTrue(tasks.cancelled);
+        assertEquals(2, ran.size());
+        effects.submit(() -> ran.add(3));//not deferred once stopped
+        assertEquals(3, ran.size());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies;
+
+import java.util.Arrays;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class TrophyRegistryTest {
+
+    public TrophyRegistryTest() {
+    }
+
+    @Test
+    public void testBuiltInMatchesTrophyTypes() {
+        TrophyRegistry registry = TrophyRegistry.builtIn();
+        assertEquals(TrophyType.values().length, registry.size());
+        for(int id=0;id<registry.size();id++){
+            assertEquals(id, registry.get(id).getId());
+        }
+        assertNull(registry.get(registry.size()));
+        TrophyDefinition diamond = registry.get(Material.DEEPSLATE_DIAMOND_ORE);
+        assertSame(diamond, registry.get(TrophyType.DIAMOND_ORE));
+        assertSame(diamond, registry.get("Diamond_Ore"));
+        assertEquals(TrophyType.DIAMOND_ORE, diamond.getType());
+        assertEquals("Perfect Diamond", diamond.getDropName());
+        assertEquals(Material.DIAMOND, diamond.getDropMaterial());
+        assertEquals("DIAMOND_ORE", diamond.getTag());
+        assertEquals(TrophyType.DIAMOND_ORE.getIdentifyingLore(), diamond.getIdentifyingLore());
+        assertNull(registry.get(Material.NETHER_GOLD_ORE));
+        assertNull(registry.get((Material) null));
+    }
+
+    @Test
+    public void testLegacyDropRatesWithoutSection() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set(TrophyType.EMERALD_ORE.getDropConfigName(), 0.25);
+        TrophyRegistry registry = TrophyRegistry.fromConfig(config);
+        assertEquals(0.25, registry.get(TrophyType.EMERALD_ORE).getDropRate(), 0.0);
+        assertEquals(0.0, registry.get(TrophyType.DIAMOND_ORE).getDropRate(), 0.0);
+        assertTrue(registry.hasEnabledTrophies());
+        assertTrue(registry.getWarnings().isEmpty());
+        assertEquals(0.25, TrophySettings.fromConfig(config).getDropRate(TrophyType.EMERALD_ORE), 0.0);
+    }
+
+    @Test
+    public void testLegacyDropRatesWithJarDefaults() {
+        YamlConfiguration defaults = new YamlConfiguration();
+        defaults.set("trophies.diamond_ore.blocks", Arrays.asList("diamond_ore", "deepslate_diamond_ore"));
+        defaults.set("trophies.diamond_ore.drop", "diamond");
+        YamlConfiguration config = new YamlConfiguration();
+        config.setDefaults(defaults);
+        config.set(TrophyType.EMERALD_ORE.getDropConfigName(), 0.25);
+        assertNotNull(config.getConfigurationSection("trophies"));//supplied by the defaults, but empty
+        TrophyRegistry registry = TrophyRegistry.fromConfig(config);
+        assertEquals(TrophyType.values().length, registry.size());
+        assertEquals(0.25, registry.get(TrophyType.EMERALD_ORE).getDropRate(), 0.0);
+        assertTrue(registry.hasEnabledTrophies());
+        assertTrue(registry.getWarnings().isEmpty());
+    }
+
+    @Test
+    public void testConfiguredTrophies() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("trophies.diamond_ore.droprate", 0.5);
+        config.set("trophies.glass.blocks", Arrays.asList("glass", "*_stained_glass"));
+        config.set("trophies.glass.name", "What-a-pane");
+        config.set("trophies.glass.drop", "glass_pane");
+        config.set("trophies.glass.lore", "For the experienced griefer.");
+        config.set("trophies.ice.blocks", Arrays.asList("ice", "packed_ice", "blue_ice", "glass", "no_such_block"));
+        config.set("trophies.ice.drop", "potion");
+        config.set("trophies.broken.blocks", "clay");
+        config.set("trophies.broken.drop", "no_such_item");
+        config.set("icedroprate", 0.125);
+        TrophyRegistry registry = TrophyRegistry.fromConfig(config);
+
+        assertEquals(3, registry.size());
+        TrophyDefinition diamond = registry.get(0);
+        assertEquals(TrophyType.DIAMOND_ORE, diamond.getType());
+        assertEquals(0.5, diamond.getDropRate(), 0.0);
+        assertEquals("Perfect Diamond", diamond.getDropName());
+        assertSame(diamond, registry.get(Material.DEEPSLATE_DIAMOND_ORE));
+        assertSame(diamond, registry.get(TrophyType.DIAMOND_ORE));
+        assertNull(registry.get(TrophyType.EMERALD_ORE));
+        assertNull(registry.get(Material.EMERALD_ORE));
+
+        TrophyDefinition glass = registry.get("glass");
+        assertEquals(1, glass.getId());
+        assertNull(glass.getType());
+        assertSame(glass, registry.get(Material.RED_STAINED_GLASS));
+        assertSame(glass, registry.get(Material.GLASS));//claimed by glass before ice
+        assertNull(registry.get(Material.RED_STAINED_GLASS_PANE));
+        assertEquals(2, glass.getLore().size());
+        assertEquals(0.0, glass.getDropRate(), 0.0);
+
+        TrophyDefinition ice = registry.get("ice");
+        assertSame(ice, registry.get(Material.BLUE_ICE));
+        assertNull(registry.get(Material.FROSTED_ICE));
+        assertEquals(0.125, ice.getDropRate(), 0.0);
+        assertEquals("Ice Trophy", ice.getDropName());
+        assertTrue(registry.isTrophyDropMaterial(Material.POTION));
+        assertFalse(registry.isTrophyDropMaterial(Material.EMERALD));
+
+        assertNull(registry.get("broken"));
+        assertEquals(3, registry.getWarnings().size());//no_such_block, no_such_item and the glass block claimed twice
+    }
+}
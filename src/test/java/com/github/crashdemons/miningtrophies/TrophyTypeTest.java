@@ -19,9 +19,7 @@ public class TrophyTypeTest {
     }
 
     @Test
-    public void testGet() {
-        //TODO: fix tests - can't run these because enchantment enums now invoke the bukkit server registry.
-        /*
+    public void testResolveOreVariant() {
         Material exp,act;
         exp = TrophyType.resolveOreVariant(Material.GOLD_ORE);
         act = Material.GOLD_ORE;
@@ -34,7 +32,26 @@ public class TrophyTypeTest {
         assertEquals(exp,act);
         exp = TrophyType.resolveOreVariant(Material.NETHER_QUARTZ_ORE);
         act = Material.NETHER_QUARTZ_ORE;
-        assertEquals(exp,act);*/
+        assertEquals(exp,act);
+    }
+
+    @Test
+    public void testGet() {
+        assertEquals(TrophyType.DIAMOND_ORE, TrophyType.get(Material.DIAMOND_ORE));
+        assertEquals(TrophyType.DIAMOND_ORE, TrophyType.get(Material.DEEPSLATE_DIAMOND_ORE));
+        assertEquals(TrophyType.SPAWNER, TrophyType.get(Material.SPAWNER));
+        assertNull(TrophyType.get(Material.NETHER_GOLD_ORE));
+        assertNull(TrophyType.get(Material.STONE));
+        assertNull(TrophyType.get(Material.DEEPSLATE));
+        assertNull(TrophyType.get(null));
+    }
+
+    @Test
+    public void testIsTrophyDropMaterial() {
+        assertTrue(TrophyType.isTrophyDropMaterial(Material.DIAMOND));
+        assertTrue(TrophyType.isTrophyDropMaterial(Material.CHAIN));
+        assertFalse(TrophyType.isTrophyDropMaterial(Material.COBBLESTONE));
+        assertFalse(TrophyType.isTrophyDropMaterial(Material.DIAMOND_ORE));
     }
 
     
@@ -0,0 +1,60 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.events;
+
+import com.github.crashdemons.miningtrophies.modifiers.DropRateModifier;
+import com.github.crashdemons.miningtrophies.modifiers.DropRateModifierType;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.Map;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class TrophyRollEventTest {
+
+    public TrophyRollEventTest() {
+    }
+
+    private static TrophyRollEvent newEvent(){
+        Block block = (Block) Proxy.newProxyInstance(Block.class.getClassLoader(), new Class<?>[]{Block.class},
+                (self, method, args) -> "getType".equals(method.getName()) ? Material.DIAMOND_ORE : null);
+        return new TrophyRollEvent(null, block, false, 0.5, 0.5, 0.1, 0.1, false);
+    }
+
+    @Test
+    public void testChangesToModifierMapAreApplied() {
+        TrophyRollEvent event = newEvent();
+        Map<String, DropRateModifier> modifiers = event.getModifiers();
+        modifiers.put("double", new DropRateModifier(DropRateModifierType.MULTIPLY, 2.0));
+        event.applyModifiers();
+        assertEquals(0.2, event.getEffectiveDropRate(), 1e-12);
+
+        modifiers.put("extra", new DropRateModifier(DropRateModifierType.ADD_CONSTANT, 0.5));//after the map was applied once
+        event.applyModifiers();
+        assertEquals(0.7, event.getEffectiveDropRate(), 1e-12);
+
+        modifiers.remove("extra");
+        event.applyModifiers();
+        assertEquals(0.2, event.getEffectiveDropRate(), 1e-12);
+
+        modifiers.entrySet().iterator().next().setValue(new DropRateModifier(DropRateModifierType.MULTIPLY, 3.0));
+        event.applyModifiers();
+        assertEquals(0.3, event.getEffectiveDropRate(), 1e-12);
+
+        Iterator<DropRateModifier> values = modifiers.values().iterator();
+        values.next();
+        values.remove();
+        event.applyModifiers();
+        assertEquals(0.1, event.getEffectiveDropRate(), 1e-12);
+        assertTrue(modifiers.isEmpty());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.metrics;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class LatencyHistogramTest {
+    
+    public LatencyHistogramTest() {
+    }
+
+    @Test
+    public void testBucketBounds() {
+        long previousBound = -1;
+        for(long value=0;value<100000;value++){
+            int index = LatencyHistogram.bucketIndex(value);
+            long bound = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(value <= bound);
+            assertTrue(bound - value <= value / 8);//within the sub-bucket precision
+            if(index>0) assertTrue(value > LatencyHistogram.bucketUpperBound(index-1));
+            assertTrue(bound >= previousBound);
+            previousBound = bound;
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(Long.MAX_VALUE)));
+        assertEquals(0, LatencyHistogram.bucketIndex(-5));
+    }
+
+    @Test
+    public void testQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtQuantile(0.99));
+        for(long value=1;value<=1000;value++) histogram.record(value * 1000);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500000L, histogram.getSum());
+        assertEquals(1000000, histogram.getMax());
+        assertWithin(500000, histogram.getValueAtQuantile(0.5));
+        assertWithin(990000, histogram.getValueAtQuantile(0.99));
+        assertEquals(1000000, histogram.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    public void testRandomValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(1);
+        long max = 0;
+        for(int i=0;i<10000;i++){
+            long value = (long) Math.exp(random.nextDouble() * 20);
+            max = Math.max(max, value);
+            histogram.record(value);
+        }
+        assertEquals(max, histogram.getMax());
+        assertTrue(histogram.getValueAtQuantile(0.999) <= max);
+    }
+
+    @Test
+    public void testListenerMetrics() {
+        ListenerMetrics metrics = new ListenerMetrics("test");
+        metrics.record(ExitReason.ROLL_FAILED, 0);
+        metrics.record(ExitReason.ROLL_FAILED, System.nanoTime());
+        metrics.record(ExitReason.DROPPED, System.nanoTime());
+        assertEquals(3, metrics.getInvocations());
+        assertEquals(2, metrics.getExits(ExitReason.ROLL_FAILED));
+        assertEquals(1, metrics.getExits(ExitReason.DROPPED));
+        assertEquals(0, metrics.getExits(ExitReason.CREATIVE));
+        assertEquals(2, metrics.getLatency().getCount());//untimed invocations are not recorded
+    }
+
+    private static void assertWithin(long expected, long actual){
+        assertTrue(actual >= expected && actual <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.modifiers;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class CompiledModifierChainTest {
+    
+    public CompiledModifierChainTest() {
+    }
+
+    private static double applySequentially(List<DropRateModifier> modifiers, double droprate){
+        for(DropRateModifier modifier : modifiers){
+            droprate = modifier.apply(droprate);
+        }
+        return droprate;
+    }
+
+    @Test
+    public void testEmptyChainHasNoEffect() {
+        CompiledModifierChain chain = new CompiledModifierChain();
+        assertEquals(0.25, chain.apply(0.25), 0.0);
+    }
+
+    @Test
+    public void testMatchesSequentialApplication() {
+        List<DropRateModifier> modifiers = Arrays.asList(
+                new DropRateModifier(DropRateModifierType.MULTIPLY, 1.5),
+                new DropRateModifier(DropRateModifierType.ADD_CONSTANT, 0.01),
+                new DropRateModifier(DropRateModifierType.ADD_MULTIPLE, 0.25),
+                new DropRateModifier(DropRateModifierType.NO_EFFECT, 7.0),
+                new DropRateModifier(DropRateModifierType.ADD_MULTIPLE_PER_LEVEL, 0.1, 3)
+        );
+        CompiledModifierChain chain = CompiledModifierChain.compile(modifiers);
+        for(double droprate : new double[]{0.0, 0.001, 0.05, 0.5, 1.0}){
+            assertEquals(applySequentially(modifiers, droprate), chain.apply(droprate), 1e-12);
+        }
+    }
+
+    @Test
+    public void testSetConstantDiscardsEarlierModifiers() {
+        List<DropRateModifier> modifiers = Arrays.asList(
+                new DropRateModifier(DropRateModifierType.MULTIPLY, 3.0),
+                new DropRateModifier(DropRateModifierType.SET_CONSTANT, 0.2),
+                new DropRateModifier(DropRateModifierType.MULTIPLY, 2.0)
+        );
+        CompiledModifierChain chain = CompiledModifierChain.compile(modifiers);
+        assertEquals(0.4, chain.apply(0.01), 1e-12);
+        assertEquals(0.4, chain.apply(0.9), 1e-12);
+    }
+
+    @Test
+    public void testAppendChain() {
+        CompiledModifierChain first = new CompiledModifierChain();
+        first.append(new DropRateModifier(DropRateModifierType.ADD_CONSTANT, 0.1));
+        CompiledModifierChain second = new CompiledModifierChain();
+        second.append(new DropRateModifier(DropRateModifierType.MULTIPLY, 2.0));
+        CompiledModifierChain combined = new CompiledModifierChain(first);
+        combined.append(second);
+        assertEquals(second.apply(first.apply(0.3)), combined.apply(0.3), 1e-12);
+        assertEquals(0.4, first.apply(0.3), 1e-12);
+    }
+
+    @Test
+    public void testSubclassesAreNotFolded() {
+        DropRateModifier capped = new DropRateModifier(DropRateModifierType.NO_EFFECT, 0.0) {
+            @Override
+            public double apply(final double droprate) {
+                return Math.min(droprate, 0.1);
+            }
+        };
+        List<DropRateModifier> modifiers = Arrays.asList(
+                new DropRateModifier(DropRateModifierType.MULTIPLY, 4.0),
+                capped,
+                new DropRateModifier(DropRateModifierType.ADD_CONSTANT, 0.01)
+        );
+        CompiledModifierChain chain = CompiledModifierChain.compile(modifiers);
+        assertFalse(chain.isAffine());
+        for(double droprate : new double[]{0.0, 0.01, 0.05, 0.5}){
+            assertEquals(applySequentially(modifiers, droprate), chain.apply(droprate), 1e-12);
+        }
+        CompiledModifierChain combined = new CompiledModifierChain();
+        combined.append(new DropRateModifier(DropRateModifierType.ADD_MULTIPLE, 1.0));
+        combined.append(chain);
+        assertEquals(chain.apply(0.06), combined.apply(0.03), 1e-12);
+        combined.reset();
+        assertTrue(combined.isAffine());
+        assertEquals(0.5, combined.apply(0.5), 0.0);
+    }
+    
+}
@@ -0,0 +1,80 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.simulator;
+
+import com.github.crashdemons.miningtrophies.TrophySettings;
+import com.github.crashdemons.miningtrophies.TrophyType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.concurrent.ForkJoinPool;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class DropSimulatorTest {
+    
+    public DropSimulatorTest() {
+    }
+
+    private static TrophySettings settings(double droprate){
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("fortunerate", 0.5);
+        config.set(TrophyType.DIAMOND_ORE.getDropConfigName(), droprate);
+        return TrophySettings.fromConfig(config);
+    }
+
+    private static SimulationProfile profile(double blocksPerHour, SimulationProfile.ToolSample... tools){
+        EnumMap<TrophyType,Double> blocks = new EnumMap<>(TrophyType.class);
+        blocks.put(TrophyType.DIAMOND_ORE, blocksPerHour);
+        return new SimulationProfile(blocks, Arrays.asList(tools), Collections.emptyList());
+    }
+
+    @Test
+    public void testSameResultsOnAnyNumberOfThreads() {
+        DropSimulator simulator = new DropSimulator(settings(0.01), profile(500, new SimulationProfile.ToolSample(1, Material.IRON_PICKAXE, 0, 0), new SimulationProfile.ToolSample(1, Material.IRON_PICKAXE, 2, 0)));
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try{
+            SimulationResult a = simulator.run(2000, 10, 42, single);
+            SimulationResult b = simulator.run(2000, 10, 42, several);
+            assertEquals(a.getTrophies(TrophyType.DIAMOND_ORE), b.getTrophies(TrophyType.DIAMOND_ORE));
+            assertArrayEquals(a.getHourlyDistribution(TrophyType.DIAMOND_ORE), b.getHourlyDistribution(TrophyType.DIAMOND_ORE));
+            assertEquals(a.getDryStreaks(TrophyType.DIAMOND_ORE).getCount(), b.getDryStreaks(TrophyType.DIAMOND_ORE).getCount());
+            assertEquals(a.getDryStreaks(TrophyType.DIAMOND_ORE).getMax(), b.getDryStreaks(TrophyType.DIAMOND_ORE).getMax());
+        }finally{
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    @Test
+    public void testTrophiesMatchDropRate() {
+        DropSimulator simulator = new DropSimulator(settings(0.01), profile(100, new SimulationProfile.ToolSample(1, Material.IRON_PICKAXE, 2, 0)));
+        SimulationResult result = simulator.run(2000, 10, 7);
+        assertEquals(2_000_000, result.getBreaks(TrophyType.DIAMOND_ORE));
+        double expectedPerHour = 100 * 0.01 * (1 + 0.5 * 2);//looting 2 doubles the droprate
+        assertEquals(expectedPerHour, result.getTrophiesPerHour(TrophyType.DIAMOND_ORE), expectedPerHour * 0.05);
+        assertEquals(1 / (0.01 * 2), result.getDryStreaks(TrophyType.DIAMOND_ORE).getMean(), 50 * 0.05);
+        assertEquals(0, result.getUnfinishedStreaks(TrophyType.DIAMOND_ORE));
+        assertEquals(0, result.getBreaks(TrophyType.IRON_ORE));
+    }
+
+    @Test
+    public void testForbiddenToolsNeverWin() {
+        DropSimulator simulator = new DropSimulator(settings(0.5), profile(10, new SimulationProfile.ToolSample(1, Material.SHEARS, 0, 0), new SimulationProfile.ToolSample(1, Material.DIAMOND_PICKAXE, 0, 1)));
+        SimulationResult result = simulator.run(10, 5, 1);
+        assertEquals(500, result.getBreaks(TrophyType.DIAMOND_ORE));
+        assertEquals(0, result.getTrophies(TrophyType.DIAMOND_ORE));
+        assertEquals(10, result.getUnfinishedStreaks(TrophyType.DIAMOND_ORE));
+        assertEquals(1.0, result.getChanceOfNoneInHour(TrophyType.DIAMOND_ORE), 0);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.simulator;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class StreakHistogramTest {
+    
+    public StreakHistogramTest() {
+    }
+
+    @Test
+    public void testBucketsCoverValues() {
+        for(long value : new long[]{0, 1, 63, 64, 65, 1000, 123456789L, 1L << 47}){
+            int index = StreakHistogram.bucketIndex(value);
+            assertTrue(StreakHistogram.bucketUpperBound(index) >= value);
+            if(index > 0) assertTrue(StreakHistogram.bucketUpperBound(index - 1) < value);
+        }
+    }
+
+    @Test
+    public void testQuantiles() {
+        StreakHistogram histogram = new StreakHistogram();
+        for(long i=1;i<=10000;i++) histogram.record(i);
+        assertEquals(10000, histogram.getCount());
+        assertEquals(5000.5, histogram.getMean(), 1e-9);
+        assertEquals(5000, histogram.getValueAtQuantile(0.5), 5000 / 64.0);
+        assertEquals(9900, histogram.getValueAtQuantile(0.99), 9900 / 64.0);
+        assertEquals(10000, histogram.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    public void testMerge() {
+        StreakHistogram a = new StreakHistogram();
+        StreakHistogram b = new StreakHistogram();
+        a.record(10);
+        b.record(20);
+        b.record(30);
+        a.merge(b);
+        assertEquals(3, a.getCount());
+        assertEquals(30, a.getMax());
+        assertEquals(20, a.getMean(), 1e-9);
+        assertEquals(20, a.getValueAtQuantile(0.5));
+    }
+}
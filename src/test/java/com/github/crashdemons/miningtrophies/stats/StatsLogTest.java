@@ -0,0 +1,112 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.stats;
+
+import com.github.crashdemons.miningtrophies.TrophyType;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.UUID;
+import java.util.logging.Logger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class StatsLogTest {
+    private static final Logger LOGGER = Logger.getLogger("StatsLogTest");
+    
+    public StatsLogTest() {
+    }
+
+    @Test
+    public void testReplayAndCompact() throws Exception {
+        File file = File.createTempFile("stats", ".log");
+        file.delete();
+        try{
+            UUID player = UUID.randomUUID();
+            TrophyStatistics stats = new TrophyStatistics();
+            StatsLog log = new StatsLog(file, LOGGER);
+            log.start();
+            for(int batch=0;batch<3;batch++){
+                stats.record(player, TrophyType.DIAMOND_ORE, TrophyStat.BLOCKS_MINED);
+                stats.record(player, TrophyType.DIAMOND_ORE, TrophyStat.ROLLS_ATTEMPTED);
+                log.appendAsync(stats.drainChanges());
+            }
+            stats.record(player, TrophyType.DIAMOND_ORE, TrophyStat.TROPHIES_WON);
+            log.appendAsync(stats.drainChanges());
+            log.stop();
+            long uncompacted = file.length();
+
+            TrophyStatistics loaded = new TrophyStatistics();
+            new StatsLog(file, LOGGER).load(loaded);
+            assertEquals(3, loaded.get(player, TrophyType.DIAMOND_ORE, TrophyStat.BLOCKS_MINED));
+            assertEquals(3, loaded.get(player, TrophyType.DIAMOND_ORE, TrophyStat.ROLLS_ATTEMPTED));
+            assertEquals(1, loaded.get(player, TrophyType.DIAMOND_ORE, TrophyStat.TROPHIES_WON));
+            assertEquals(3, loaded.getTotal(TrophyType.DIAMOND_ORE, TrophyStat.BLOCKS_MINED));
+            assertTrue(file.length() < uncompacted);
+
+            TrophyStatistics reloaded = new TrophyStatistics();
+            new StatsLog(file, LOGGER).load(reloaded);
+            assertEquals(3, reloaded.get(player, TrophyType.DIAMOND_ORE, TrophyStat.BLOCKS_MINED));
+        }finally{
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testIncompleteBatchIsDiscarded() throws Exception {
+        File file = File.createTempFile("stats", ".log");
+        file.delete();
+        try{
+            UUID player = UUID.randomUUID();
+            TrophyStatistics stats = new TrophyStatistics();
+            StatsLog log = new StatsLog(file, LOGGER);
+            stats.record(player, TrophyType.COAL_ORE, TrophyStat.BLOCKS_MINED);
+            log.appendAsync(stats.drainChanges());
+            try(FileOutputStream out = new FileOutputStream(file, true)){
+                out.write(new byte[]{0x42, 0x41, 0x54, 0x43, 0, 0, 0, 100, 1, 2, 3});//a batch cut short by a crash
+            }
+
+            TrophyStatistics loaded = new TrophyStatistics();
+            new StatsLog(file, LOGGER).load(loaded);
+            assertEquals(1, loaded.get(player, TrophyType.COAL_ORE, TrophyStat.BLOCKS_MINED));
+        }finally{
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testNoAppendsAfterFailedCompaction() throws Exception {
+        File file = File.createTempFile("stats", ".log");
+        file.delete();
+        File temp = new File(file.getPath()+".tmp");
+        try{
+            UUID player = UUID.randomUUID();
+            TrophyStatistics stats = new TrophyStatistics();
+            stats.record(player, TrophyType.COAL_ORE, TrophyStat.BLOCKS_MINED);
+            new StatsLog(file, LOGGER).appendAsync(stats.drainChanges());
+            try(FileOutputStream out = new FileOutputStream(file, true)){
+                out.write(new byte[]{0x42, 0x41, 0x54, 0x43, 0, 0, 0, 100, 1, 2, 3});//a batch cut short by a crash
+            }
+            assertTrue(temp.mkdir());//the compacted log can't be written
+            long length = file.length();
+
+            TrophyStatistics loaded = new TrophyStatistics();
+            StatsLog log = new StatsLog(file, LOGGER);
+            log.load(loaded);
+            assertEquals(1, loaded.get(player, TrophyType.COAL_ORE, TrophyStat.BLOCKS_MINED));
+            loaded.record(player, TrophyType.COAL_ORE, TrophyStat.BLOCKS_MINED);
+            log.appendAsync(loaded.drainChanges());
+            assertEquals(length, file.length());//appending after the incomplete batch would lose the new batch on the next load
+        }finally{
+            temp.delete();
+            file.delete();
+        }
+    }
+
+}
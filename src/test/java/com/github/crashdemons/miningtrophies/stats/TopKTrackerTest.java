@@ -0,0 +1,69 @@
+/*
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/ .
+ */
+package com.github.crashdemons.miningtrophies.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author crash
+ */
+public class TopKTrackerTest {
+    
+    public TopKTrackerTest() {
+    }
+
+    @Test
+    public void testOrdering() {
+        TopKTracker tracker = new TopKTracker(2);
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+        tracker.update(a, 1);
+        tracker.update(b, 2);
+        tracker.update(c, 1);//ties with the last entry do not displace it
+        List<LeaderboardEntry> top = tracker.snapshot();
+        assertEquals(2, top.size());
+        assertEquals(b, top.get(0).getPlayer());
+        assertEquals(a, top.get(1).getPlayer());
+        tracker.update(c, 3);
+        top = tracker.snapshot();
+        assertEquals(c, top.get(0).getPlayer());
+        assertEquals(b, top.get(1).getPlayer());
+        assertEquals(2, tracker.snapshot().size());
+    }
+
+    @Test
+    public void testMatchesFullSort() {
+        Random random = new Random(7);
+        UUID[] players = new UUID[200];
+        for(int i=0;i<players.length;i++) players[i] = UUID.randomUUID();
+        HashMap<UUID,Long> counts = new HashMap<>();
+        TopKTracker tracker = new TopKTracker(10);
+        for(int i=0;i<20000;i++){
+            UUID player = players[random.nextInt(players.length)];
+            long count = counts.getOrDefault(player, 0L) + 1;
+            counts.put(player, count);
+            tracker.update(player, count);
+        }
+        List<Long> expected = new ArrayList<>(counts.values());
+        Collections.sort(expected, Collections.reverseOrder());
+        List<LeaderboardEntry> top = tracker.snapshot();
+        assertEquals(10, top.size());
+        for(int i=0;i<top.size();i++){
+            assertEquals(expected.get(i).longValue(), top.get(i).getCount());
+            assertEquals(counts.get(top.get(i).getPlayer()).longValue(), top.get(i).getCount());
+        }
+    }
+    
+}